@@ -0,0 +1,76 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Client;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Testing every camera facing triangle of a model against the tile filter, one tile per tagged NPC.
+// linearScan is the original scan over every polygon, binned includes building the index as the overlay does each frame.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Param({"1000", "5000", "20000"})
+    public int faces;
+
+    @Param({"1", "10", "50"})
+    public int taggedNpcs;
+
+    private int[] tris;
+    private List<Polygon> filter;
+    private final FilterIndex filterIndex = new FilterIndex();
+
+    @Setup
+    public void setup() {
+        Client client = Fixtures.client(Fixtures.worldView());
+        tris = Fixtures.frontFacingTriangles(client, Fixtures.model(faces));
+        filter = Fixtures.tilePolygons(taggedNpcs);
+    }
+
+    @Benchmark
+    public int linearScan() {
+        int inside = 0;
+        for (int i = 0; i < tris.length; i += 6) {
+            if (isTriInsideList(tris[i], tris[i + 1], tris[i + 2], tris[i + 3], tris[i + 4], tris[i + 5], filter)) {
+                inside++;
+            }
+        }
+        return inside;
+    }
+
+    @Benchmark
+    public int binned() {
+        filterIndex.build(filter);
+        int inside = 0;
+        for (int i = 0; i < tris.length; i += 6) {
+            if (filterIndex.isTriInside(tris[i], tris[i + 1], tris[i + 2], tris[i + 3], tris[i + 4], tris[i + 5])) {
+                inside++;
+            }
+        }
+        return inside;
+    }
+
+    private static boolean isTriInsideList(int x1, int y1, int x2, int y2, int x3, int y3, List<Polygon> filter) {
+        int left = Math.min(Math.min(x1, x2), x3);
+        int right = Math.max(Math.max(x1, x2), x3);
+        int top = Math.min(Math.min(y1, y2), y3);
+        int bottom = Math.max(Math.max(y1, y2), y3);
+
+        for (Polygon p : filter) {
+            if (p.contains(x1, y1) || p.contains(x2, y2) || p.contains(x3, y3)) {
+                return true;
+            }
+            if (p.intersects(left, top, right - left, bottom - top)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
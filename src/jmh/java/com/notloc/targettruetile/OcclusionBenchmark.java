@@ -0,0 +1,63 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Actor;
+import net.runelite.api.Client;
+import net.runelite.api.WorldView;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Full occlusion pass for a single actor: projection, culling, merging and the clear fill.
+// With a still camera the projection cache serves every frame after the first, a moving camera forces the full path.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OcclusionBenchmark {
+
+    @Param({"1000", "5000", "20000"})
+    public int faces;
+
+    @Param({"1", "10", "50"})
+    public int filterSize;
+
+    @Param({"false", "true"})
+    public boolean movingCamera;
+
+    private Client client;
+    private Actor actor;
+    private final FilterIndex filter = new FilterIndex();
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private final OcclusionPass pass = new OcclusionPass();
+    private int cameraVersion;
+
+    @Setup
+    public void setup() {
+        WorldView worldView = Fixtures.worldView();
+        client = Fixtures.client(worldView);
+        actor = Fixtures.actor(worldView, Fixtures.model(faces));
+        filter.build(Fixtures.tilePolygons(filterSize));
+        image = new BufferedImage(Fixtures.VIEWPORT_WIDTH, Fixtures.VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public void occludeActor() {
+        if (movingCamera) {
+            cameraVersion++;
+        }
+        pass.begin(cameraVersion, filter, OcclusionMode.POLYGON);
+        pass.add(client, actor, Fixtures.LOCAL_Z);
+        pass.run(client, graphics);
+    }
+}
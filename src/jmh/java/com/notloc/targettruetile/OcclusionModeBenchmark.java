@@ -0,0 +1,67 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Actor;
+import net.runelite.api.Client;
+import net.runelite.api.Model;
+import net.runelite.api.WorldView;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Clearing under actors with the Java2D polygon fills versus the software mask.
+// The camera is still, so the cached geometry is reused and the clear itself dominates.
+// Denser models have more and smaller triangles in the same screen area.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OcclusionModeBenchmark {
+
+    @Param({"POLYGON", "MASK"})
+    public OcclusionMode mode;
+
+    @Param({"1000", "5000", "20000"})
+    public int faces;
+
+    @Param({"1", "8"})
+    public int actors;
+
+    private Client client;
+    private Actor[] actorList;
+    private final FilterIndex filter = new FilterIndex();
+    private final OcclusionPass pass = new OcclusionPass();
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setup() {
+        WorldView worldView = Fixtures.worldView();
+        client = Fixtures.client(worldView);
+        Model model = Fixtures.model(faces);
+        actorList = new Actor[actors];
+        for (int i = 0; i < actors; i++) {
+            actorList[i] = Fixtures.actor(worldView, model);
+        }
+        filter.build(Fixtures.tilePolygons(10));
+        image = new BufferedImage(Fixtures.VIEWPORT_WIDTH, Fixtures.VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public void run() {
+        pass.begin(0, filter, mode);
+        for (Actor actor : actorList) {
+            pass.add(client, actor, Fixtures.LOCAL_Z);
+        }
+        pass.run(client, graphics);
+    }
+}
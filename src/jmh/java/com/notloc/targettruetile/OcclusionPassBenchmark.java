@@ -0,0 +1,64 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Actor;
+import net.runelite.api.Client;
+import net.runelite.api.Model;
+import net.runelite.api.WorldView;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Occlusion pass over several actors with a moving camera, so every actor is recomputed each frame.
+// Small scenes stay under the parallel threshold in OcclusionPass, larger ones are shared across the common pool.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OcclusionPassBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int actors;
+
+    @Param({"1000", "5000"})
+    public int faces;
+
+    private Client client;
+    private Actor[] actorList;
+    private final FilterIndex filter = new FilterIndex();
+    private final OcclusionPass pass = new OcclusionPass();
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private int cameraVersion;
+
+    @Setup
+    public void setup() {
+        WorldView worldView = Fixtures.worldView();
+        client = Fixtures.client(worldView);
+        Model model = Fixtures.model(faces);
+        actorList = new Actor[actors];
+        for (int i = 0; i < actors; i++) {
+            actorList[i] = Fixtures.actor(worldView, model);
+        }
+        filter.build(Fixtures.tilePolygons(actors));
+        image = new BufferedImage(Fixtures.VIEWPORT_WIDTH, Fixtures.VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public void run() {
+        pass.begin(++cameraVersion, filter, OcclusionMode.POLYGON);
+        for (Actor actor : actorList) {
+            pass.add(client, actor, Fixtures.LOCAL_Z);
+        }
+        pass.run(client, graphics);
+    }
+}
@@ -0,0 +1,68 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Actor;
+import net.runelite.api.Client;
+import net.runelite.api.Model;
+import net.runelite.api.WorldView;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Testing triangles against the tiles versus clipping to them, and versus clipping each actor's convex hull, across NPC counts.
+// Each NPC brings its own tile, and the camera moves so every frame is computed from scratch.
+// Polygon stays the default until clipping wins at some NPC count.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OcclusionStrategyBenchmark {
+
+    @Param({"POLYGON", "CLIP", "HULL"})
+    public OcclusionMode mode;
+
+    @Param({"1", "5", "10", "25", "50"})
+    public int npcs;
+
+    @Param({"5000"})
+    public int faces;
+
+    private Client client;
+    private Actor[] actorList;
+    private final FilterIndex filter = new FilterIndex();
+    private final OcclusionPass pass = new OcclusionPass();
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private int cameraVersion;
+
+    @Setup
+    public void setup() {
+        WorldView worldView = Fixtures.worldView();
+        client = Fixtures.client(worldView);
+        Model model = Fixtures.model(faces);
+        actorList = new Actor[npcs];
+        for (int i = 0; i < npcs; i++) {
+            actorList[i] = Fixtures.actor(worldView, model);
+        }
+        filter.build(Fixtures.tilePolygons(npcs));
+        image = new BufferedImage(Fixtures.VIEWPORT_WIDTH, Fixtures.VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public void run() {
+        pass.begin(++cameraVersion, filter, mode);
+        for (Actor actor : actorList) {
+            pass.add(client, actor, Fixtures.LOCAL_Z);
+        }
+        pass.run(client, graphics);
+    }
+}
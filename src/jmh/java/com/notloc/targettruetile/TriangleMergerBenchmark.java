@@ -0,0 +1,39 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Client;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Merging the camera facing triangles of a model into polygons.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TriangleMergerBenchmark {
+
+    @Param({"1000", "5000", "20000"})
+    public int faces;
+
+    private int[] tris;
+    private final TriangleMerger merger = new TriangleMerger();
+
+    @Setup
+    public void setup() {
+        Client client = Fixtures.client(Fixtures.worldView());
+        tris = Fixtures.frontFacingTriangles(client, Fixtures.model(faces));
+    }
+
+    @Benchmark
+    public List<Polygon> mergeTriangles() {
+        merger.reset();
+        for (int i = 0; i < tris.length; i += 6) {
+            merger.addTriangle(tris[i], tris[i + 1], tris[i + 2], tris[i + 3], tris[i + 4], tris[i + 5]);
+        }
+        return merger.getPolygons();
+    }
+}
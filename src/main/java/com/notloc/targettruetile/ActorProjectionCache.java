@@ -0,0 +1,210 @@
+package com.notloc.targettruetile;
+
+import lombok.Getter;
+import net.runelite.api.Actor;
+import net.runelite.api.Model;
+import net.runelite.api.NPC;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Projected model vertices and merged clear polygons per actor, kept across frames.
+// Idle actors under a still camera project to the same polygons every frame, so those are reused as they are.
+// Entries are looked up on the client thread, after that each one is only touched by the job for its actor.
+class ActorProjectionCache {
+    private static final int EVICT_INTERVAL = 128; // frames
+
+    private final Map<Actor, Entry> entries = new IdentityHashMap<>();
+    private int frame = 1;
+
+    @Getter
+    private int cameraVersion;
+
+    public void beginFrame(int cameraVersion) {
+        this.cameraVersion = cameraVersion;
+        frame++;
+        if (frame % EVICT_INTERVAL == 0) {
+            entries.values().removeIf(entry -> frame - entry.lastUsedFrame > EVICT_INTERVAL);
+        }
+    }
+
+    // Returns null if the actor was already handed out this frame, so an actor is never occluded twice
+    public Entry get(Actor actor) {
+        Entry entry = entries.get(actor);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(actor, entry);
+        } else if (entry.lastUsedFrame == frame) {
+            return null;
+        }
+        entry.lastUsedFrame = frame;
+        return entry;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private static final int SHAPE_SAMPLES = 16;
+
+    // Models can be reused buffers that get rewritten in place, so identity alone doesn't tell us the shape is unchanged.
+    // Hashing every vertex each frame costs as much as the rest of an idle actor, so the key is what decides the pose
+    // instead: the animations and the NPC, which the client rewrites a shared buffer for, plus a few sampled vertices as
+    // a guard. The animation frames are compared separately. A shape changed between two samples with the same
+    // animations and frames would reuse a stale clear until the actor or the camera moves.
+    static int shapeKey(Actor actor, Model model) {
+        int vCount = model.getVerticesCount();
+        int hash = vCount * 31 + model.getFaceCount();
+        hash = hash * 31 + actor.getAnimation();
+        hash = hash * 31 + actor.getPoseAnimation();
+        hash = hash * 31 + (actor instanceof NPC ? ((NPC) actor).getId() : -1);
+
+        if (vCount > 0) {
+            float[] x = model.getVerticesX();
+            float[] y = model.getVerticesY();
+            float[] z = model.getVerticesZ();
+            int step = Math.max(1, vCount / SHAPE_SAMPLES);
+            for (int i = vCount - 1; i >= 0; i -= step) {
+                hash = hash * 31 + Float.floatToIntBits(x[i]);
+                hash = hash * 31 + Float.floatToIntBits(y[i]);
+                hash = hash * 31 + Float.floatToIntBits(z[i]);
+            }
+        }
+        return hash;
+    }
+
+    static class Entry {
+        private int lastUsedFrame;
+
+        @Getter
+        private int[] x2d = new int[0];
+        @Getter
+        private int[] y2d = new int[0];
+        @Getter
+        private boolean anyVisible;
+        @Getter
+        private boolean verticesProjected;
+
+        // Screen rectangle of the model's bounding box, absent when a corner couldn't be projected
+        @Getter
+        private boolean boundsKnown;
+        @Getter
+        private int boundsLeft;
+        @Getter
+        private int boundsTop;
+        @Getter
+        private int boundsRight;
+        @Getter
+        private int boundsBottom;
+
+        private boolean keyed;
+        private Model model;
+        private int shapeKey;
+        private int animationFrame;
+        private int poseAnimationFrame;
+        private int orientation;
+        private int localX, localY, localZ;
+        private int cameraVersion;
+
+        // Clear geometry in the form the occlusion mode draws: merged polygons or raw triangles.
+        // Clipped polygons are kept apart from filtered ones, they cover the whole front of the model.
+        private OcclusionMode geometryMode;
+        private int filterVersion;
+        private int vertexGrid;
+        private final List<Polygon> polygonPool = new ArrayList<>();
+        @Getter
+        private final List<Polygon> polygons = new ArrayList<>();
+        @Getter
+        private final TriangleList triangles = new TriangleList();
+
+        public boolean matchesProjection(Model model, int shapeKey, int animationFrame, int poseAnimationFrame, int orientation, int localX, int localY, int localZ, int cameraVersion) {
+            return keyed
+                    && this.model == model
+                    && this.shapeKey == shapeKey
+                    && this.animationFrame == animationFrame
+                    && this.poseAnimationFrame == poseAnimationFrame
+                    && this.orientation == orientation
+                    && this.localX == localX
+                    && this.localY == localY
+                    && this.localZ == localZ
+                    && this.cameraVersion == cameraVersion;
+        }
+
+        public void ensureVertexCapacity(int vertexCount) {
+            if (x2d.length < vertexCount) {
+                x2d = new int[vertexCount];
+                y2d = new int[vertexCount];
+            }
+        }
+
+        // Starts a new projection, dropping the bounds, vertices and polygons of the previous one
+        public void setProjection(Model model, int shapeKey, int animationFrame, int poseAnimationFrame, int orientation, int localX, int localY, int localZ, int cameraVersion) {
+            this.keyed = true;
+            this.model = model;
+            this.shapeKey = shapeKey;
+            this.animationFrame = animationFrame;
+            this.poseAnimationFrame = poseAnimationFrame;
+            this.orientation = orientation;
+            this.localX = localX;
+            this.localY = localY;
+            this.localZ = localZ;
+            this.cameraVersion = cameraVersion;
+            this.boundsKnown = false;
+            this.verticesProjected = false;
+            this.anyVisible = false;
+            this.geometryMode = null;
+        }
+
+        public void setBounds(int left, int top, int right, int bottom) {
+            this.boundsKnown = true;
+            this.boundsLeft = left;
+            this.boundsTop = top;
+            this.boundsRight = right;
+            this.boundsBottom = bottom;
+        }
+
+        public void setVerticesProjected(boolean anyVisible) {
+            this.verticesProjected = true;
+            this.anyVisible = anyVisible;
+        }
+
+        public boolean matchesGeometry(int filterVersion, OcclusionMode mode, int vertexGrid) {
+            return geometryMode == mode && this.filterVersion == filterVersion && this.vertexGrid == vertexGrid;
+        }
+
+        // Copies the merged polygons, the merger's own are reused for the next actor
+        public void setPolygons(List<Polygon> merged, int filterVersion, OcclusionMode mode, int vertexGrid) {
+            polygons.clear();
+            for (int i = 0; i < merged.size(); i++) {
+                Polygon source = merged.get(i);
+                if (i == polygonPool.size()) {
+                    polygonPool.add(new Polygon(new int[source.npoints], new int[source.npoints], 0));
+                }
+
+                Polygon copy = polygonPool.get(i);
+                if (copy.xpoints.length < source.npoints) {
+                    copy.xpoints = new int[source.npoints];
+                    copy.ypoints = new int[source.npoints];
+                }
+                System.arraycopy(source.xpoints, 0, copy.xpoints, 0, source.npoints);
+                System.arraycopy(source.ypoints, 0, copy.ypoints, 0, source.npoints);
+                copy.npoints = source.npoints;
+                copy.invalidate();
+                polygons.add(copy);
+            }
+            this.geometryMode = mode;
+            this.filterVersion = filterVersion;
+            this.vertexGrid = vertexGrid;
+        }
+
+        // The triangles are written by the caller before this is called
+        public void setTriangles(int filterVersion, int vertexGrid) {
+            this.geometryMode = OcclusionMode.MASK;
+            this.filterVersion = filterVersion;
+            this.vertexGrid = vertexGrid;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.notloc.targettruetile;
+
+import lombok.Getter;
+import net.runelite.api.Client;
+import net.runelite.api.Perspective;
+
+// Copy of the camera and viewport taken on the client thread, so models can be projected on any thread.
+// project() follows the GPU path of Perspective.modelToCanvas, the only one occlusion runs under, step for step so
+// clears land on the same pixels as the tiles. Points behind the near plane come out as Integer.MIN_VALUE.
+class CameraSnapshot {
+    private static final int NEAR_PLANE = 50;
+
+    private float pitchSin, pitchCos;
+    private float yawSin, yawCos;
+    private double cameraX, cameraY, cameraZ;
+
+    private int scale;
+    @Getter
+    private int viewportX;
+    @Getter
+    private int viewportY;
+    @Getter
+    private int viewportWidth;
+    @Getter
+    private int viewportHeight;
+
+    public void capture(Client client) {
+        double pitch = client.getCameraFpPitch();
+        double yaw = client.getCameraFpYaw();
+        pitchSin = (float) Math.sin(pitch);
+        pitchCos = (float) Math.cos(pitch);
+        yawSin = (float) Math.sin(yaw);
+        yawCos = (float) Math.cos(yaw);
+        cameraX = client.getCameraFpX();
+        cameraY = client.getCameraFpY();
+        cameraZ = client.getCameraFpZ();
+
+        scale = client.getScale();
+        viewportX = client.getViewportXOffset();
+        viewportY = client.getViewportYOffset();
+        viewportWidth = client.getViewportWidth();
+        viewportHeight = client.getViewportHeight();
+    }
+
+    // Projects count model vertices placed at the given local position and rotation, y is up in model space
+    public void project(int count, int localX, int localY, int localZ, int rotation,
+                        float[] x3d, float[] y3d, float[] z3d, int[] x2d, int[] y2d) {
+        final float rotateSin = Perspective.SINE[rotation] / 65536.0f;
+        final float rotateCos = Perspective.COSINE[rotation] / 65536.0f;
+        final float cx = (float) (localX - cameraX);
+        final float cy = (float) (localY - cameraY);
+        final float cz = (float) (localZ - cameraZ);
+        final float middleX = viewportWidth / 2f;
+        final float middleY = viewportHeight / 2f;
+        final float offsetX = viewportX;
+        final float offsetY = viewportY;
+        final float zoom = scale;
+
+        for (int i = 0; i < count; i++) {
+            float x = x3d[i];
+            float y = z3d[i];
+            float z = y3d[i];
+
+            if (rotation != 0) {
+                float x0 = x;
+                x = x0 * rotateCos + y * rotateSin;
+                y = y * rotateCos - x0 * rotateSin;
+            }
+
+            x += cx;
+            y += cy;
+            z += cz;
+
+            final float x1 = x * yawCos + y * yawSin;
+            final float y1 = y * yawCos - x * yawSin;
+            final float y2 = z * pitchCos - y1 * pitchSin;
+            final float z1 = y1 * pitchCos + z * pitchSin;
+
+            if (z1 < NEAR_PLANE) {
+                x2d[i] = Integer.MIN_VALUE;
+                y2d[i] = Integer.MIN_VALUE;
+            } else {
+                x2d[i] = (int) (middleX + x1 * zoom / z1 + offsetX);
+                y2d[i] = (int) (middleY + y2 * zoom / z1 + offsetY);
+            }
+        }
+    }
+}
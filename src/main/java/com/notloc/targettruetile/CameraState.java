@@ -0,0 +1,67 @@
+package com.notloc.targettruetile;
+
+import lombok.Getter;
+import net.runelite.api.Client;
+
+// Fingerprint of the camera and viewport, anything projected to the canvas depends on these.
+// The version changes whenever one of them does, so caches only need to compare a single int.
+class CameraState {
+    // Largest change between two versions still counted as a small step, a few pixels on screen at usual zoom levels
+    private static final double SMALL_STEP_ANGLE = 0.005; // radians
+    private static final double SMALL_STEP_MOVE = 8; // local units
+
+    @Getter
+    private int version;
+
+    // Whether the last change only nudged the camera, so what was projected under the previous version is still close
+    @Getter
+    private boolean smallStep;
+
+    private double x, y, z;
+    private double pitch, yaw;
+    private int scale;
+    private int viewportX, viewportY, viewportWidth, viewportHeight;
+
+    public void update(Client client) {
+        double x = client.getCameraFpX();
+        double y = client.getCameraFpY();
+        double z = client.getCameraFpZ();
+        double pitch = client.getCameraFpPitch();
+        double yaw = client.getCameraFpYaw();
+        int scale = client.getScale();
+        int viewportX = client.getViewportXOffset();
+        int viewportY = client.getViewportYOffset();
+        int viewportWidth = client.getViewportWidth();
+        int viewportHeight = client.getViewportHeight();
+
+        if (x == this.x && y == this.y && z == this.z && pitch == this.pitch && yaw == this.yaw && scale == this.scale
+                && viewportX == this.viewportX && viewportY == this.viewportY
+                && viewportWidth == this.viewportWidth && viewportHeight == this.viewportHeight) {
+            return;
+        }
+
+        smallStep = scale == this.scale
+                && viewportX == this.viewportX && viewportY == this.viewportY
+                && viewportWidth == this.viewportWidth && viewportHeight == this.viewportHeight
+                && Math.abs(pitch - this.pitch) <= SMALL_STEP_ANGLE && Math.abs(yaw - this.yaw) <= SMALL_STEP_ANGLE
+                && Math.abs(x - this.x) <= SMALL_STEP_MOVE && Math.abs(y - this.y) <= SMALL_STEP_MOVE && Math.abs(z - this.z) <= SMALL_STEP_MOVE;
+
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.pitch = pitch;
+        this.yaw = yaw;
+        this.scale = scale;
+        this.viewportX = viewportX;
+        this.viewportY = viewportY;
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
+        version++;
+    }
+
+    // The scene was reloaded, local coordinates and tile heights may have changed under an unmoved camera
+    public void invalidate() {
+        smallStep = false;
+        version++;
+    }
+}
@@ -0,0 +1,82 @@
+package com.notloc.targettruetile;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Convex hull of a projected model's vertices, built with Andrew's monotone chain.
+// Points are packed into longs and sorted as primitives, and the hull is written into a reused polygon,
+// so once the buffers have grown to fit the largest model nothing is allocated.
+class ConvexHull {
+    private long[] points = new long[256];
+    private int[] hullX = new int[256];
+    private int[] hullY = new int[256];
+
+    private final Polygon polygon = new Polygon(new int[0], new int[0], 0);
+    private final List<Polygon> polygons = Collections.singletonList(polygon);
+
+    // Builds the hull of the first count points, those that couldn't be projected are left out.
+    // Returns the hull as a single polygon, or an empty list if the points don't span an area.
+    public List<Polygon> build(int count, int[] x2d, int[] y2d) {
+        if (points.length < count) {
+            points = new long[count];
+        }
+
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (x2d[i] == Integer.MIN_VALUE) {
+                continue;
+            }
+            // Flipping the sign bit makes y sort as unsigned, so points order by x then y
+            points[n++] = (long) x2d[i] << 32 | (y2d[i] ^ Integer.MIN_VALUE) & 0xffffffffL;
+        }
+        Arrays.sort(points, 0, n);
+
+        if (hullX.length < 2 * n) {
+            hullX = new int[2 * n];
+            hullY = new int[2 * n];
+        }
+
+        // Lower hull left to right, then upper hull right to left, dropping points that don't turn counter clockwise
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            size = push(size, 0, points[i]);
+        }
+        int lower = size;
+        for (int i = n - 2; i >= 0; i--) {
+            size = push(size, lower - 1, points[i]);
+        }
+        size--; // the first point closes the upper hull
+
+        if (size < 3) {
+            return Collections.emptyList();
+        }
+
+        if (polygon.xpoints.length < size) {
+            polygon.xpoints = new int[size];
+            polygon.ypoints = new int[size];
+        }
+        System.arraycopy(hullX, 0, polygon.xpoints, 0, size);
+        System.arraycopy(hullY, 0, polygon.ypoints, 0, size);
+        polygon.npoints = size;
+        polygon.invalidate();
+        return polygons;
+    }
+
+    // Appends the point, first popping points past the floor index that would make a clockwise or straight turn
+    private int push(int size, int floor, long point) {
+        int x = (int) (point >> 32);
+        int y = (int) point ^ Integer.MIN_VALUE;
+        while (size >= floor + 2 && cross(hullX[size - 2], hullY[size - 2], hullX[size - 1], hullY[size - 1], x, y) <= 0) {
+            size--;
+        }
+        hullX[size] = x;
+        hullY[size] = y;
+        return size + 1;
+    }
+
+    private static long cross(int ox, int oy, int ax, int ay, int bx, int by) {
+        return (long) (ax - ox) * (by - oy) - (long) (ay - oy) * (bx - ox);
+    }
+}
@@ -0,0 +1,249 @@
+package com.notloc.targettruetile;
+
+import lombok.Getter;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Screen space grid over the tile polygons that limit where the occlusion pass may clear.
+// Built once per frame, so each triangle is only tested against the polygons in the bins it overlaps.
+// Queries don't modify the index, so it can be shared by occlusion workers once built.
+class FilterIndex {
+    private static final int MIN_BIN_SHIFT = 5; // 32px bins
+    private static final int MAX_BINS_PER_AXIS = 64;
+
+    private final List<Polygon> polygons = new ArrayList<>();
+
+    // Changes whenever the filter polygons differ from the previous build
+    @Getter
+    private int version;
+
+    // All polygons as one shape, built on first use after each build
+    private final Path2D.Float union = new Path2D.Float(Path2D.WIND_NON_ZERO);
+    private boolean unionBuilt;
+
+    // The stroke the polygons are outlined with, its outer half reaches past them by the padding.
+    // The stroked outlines are built on first use and kept until the polygons or the stroke change.
+    private Stroke borderStroke;
+    private int padding;
+    private Shape border;
+    private int borderVersion = -1;
+
+    // Bounds of each polygon, and of all of them together
+    private int[] polyLeft = new int[16];
+    private int[] polyTop = new int[16];
+    private int[] polyRight = new int[16];
+    private int[] polyBottom = new int[16];
+    @Getter
+    private int left;
+    @Getter
+    private int top;
+    @Getter
+    private int right;
+    @Getter
+    private int bottom;
+
+    // Bins are stored flat, the polygons of bin i are binEntries[binStart[i]] until binStart[i + 1]
+    private int binShift;
+    private int columns, rows;
+    private int[] binStart = new int[1];
+    private int[] binCursor = new int[0];
+    private int[] binEntries = new int[16];
+
+    public void build(List<Polygon> filter) {
+        build(filter, null);
+    }
+
+    // Triangles touching the border outside the polygons pass the filter as well, so the border gets cleared too
+    public void build(List<Polygon> filter, Stroke borderStroke) {
+        // Tile polygons are cached and only replaced when reprojected, so comparing references is enough
+        boolean changed = filter.size() != polygons.size() || borderStroke != this.borderStroke;
+        for (int i = 0; !changed && i < filter.size(); i++) {
+            changed = filter.get(i) != polygons.get(i);
+        }
+        if (changed) {
+            version++;
+        }
+
+        polygons.clear();
+        for (int i = 0; i < filter.size(); i++) {
+            polygons.add(filter.get(i));
+        }
+        unionBuilt = false;
+        this.borderStroke = borderStroke;
+        this.padding = borderStroke instanceof BasicStroke ? (int) Math.ceil(((BasicStroke) borderStroke).getLineWidth() / 2) : 0;
+
+        int count = polygons.size();
+        if (polyLeft.length < count) {
+            int capacity = Math.max(count, polyLeft.length * 2);
+            polyLeft = new int[capacity];
+            polyTop = new int[capacity];
+            polyRight = new int[capacity];
+            polyBottom = new int[capacity];
+        }
+
+        left = Integer.MAX_VALUE;
+        top = Integer.MAX_VALUE;
+        right = Integer.MIN_VALUE;
+        bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            Rectangle b = polygons.get(i).getBounds();
+            polyLeft[i] = b.x;
+            polyTop[i] = b.y;
+            polyRight[i] = b.x + b.width;
+            polyBottom[i] = b.y + b.height;
+            left = Math.min(left, polyLeft[i]);
+            top = Math.min(top, polyTop[i]);
+            right = Math.max(right, polyRight[i]);
+            bottom = Math.max(bottom, polyBottom[i]);
+        }
+
+        if (count == 0) {
+            columns = 0;
+            rows = 0;
+            return;
+        }
+
+        // Grow the bins if needed, so far off tiles can't blow up the grid
+        binShift = MIN_BIN_SHIFT;
+        long extent = Math.max((long) right - left, (long) bottom - top);
+        while ((extent >> binShift) >= MAX_BINS_PER_AXIS) {
+            binShift++;
+        }
+        columns = (int) (((long) right - left) >> binShift) + 1;
+        rows = (int) (((long) bottom - top) >> binShift) + 1;
+
+        int binCount = columns * rows;
+        if (binStart.length < binCount + 1) {
+            binStart = new int[binCount + 1];
+            binCursor = new int[binCount];
+        } else {
+            Arrays.fill(binStart, 0, binCount + 1, 0);
+        }
+
+        // Count the polygons per bin, turn the counts into offsets, then place the polygons
+        for (int i = 0; i < count; i++) {
+            for (int row = rowOf(polyTop[i]); row <= rowOf(polyBottom[i]); row++) {
+                for (int col = columnOf(polyLeft[i]); col <= columnOf(polyRight[i]); col++) {
+                    binStart[row * columns + col + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < binCount; i++) {
+            binStart[i + 1] += binStart[i];
+        }
+        if (binEntries.length < binStart[binCount]) {
+            binEntries = new int[binStart[binCount]];
+        }
+        System.arraycopy(binStart, 0, binCursor, 0, binCount);
+        for (int i = 0; i < count; i++) {
+            for (int row = rowOf(polyTop[i]); row <= rowOf(polyBottom[i]); row++) {
+                for (int col = columnOf(polyLeft[i]); col <= columnOf(polyRight[i]); col++) {
+                    binEntries[binCursor[row * columns + col]++] = i;
+                }
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return polygons.isEmpty();
+    }
+
+    // Tiles are all wound the same way, so overlaps stay inside under the non zero rule
+    public Shape getUnion() {
+        if (!unionBuilt) {
+            union.reset();
+            for (int i = 0; i < polygons.size(); i++) {
+                union.append(polygons.get(i), false);
+            }
+            unionBuilt = true;
+        }
+        return union;
+    }
+
+    // The area the border stroke covers, half of which lies outside the polygons. Null without a border.
+    public Shape getBorder() {
+        if (borderStroke == null) {
+            return null;
+        }
+        if (version != borderVersion) {
+            border = borderStroke.createStrokedShape(getUnion());
+            borderVersion = version;
+        }
+        return border;
+    }
+
+    // Whether the rectangle overlaps the bounds of any filter polygon or its border
+    public boolean touches(int rectLeft, int rectTop, int rectRight, int rectBottom) {
+        rectLeft -= padding;
+        rectTop -= padding;
+        rectRight += padding;
+        rectBottom += padding;
+        if (polygons.isEmpty() || rectRight < left || rectLeft > right || rectBottom < top || rectTop > bottom) {
+            return false;
+        }
+
+        for (int i = 0; i < polygons.size(); i++) {
+            if (rectRight >= polyLeft[i] && rectLeft <= polyRight[i] && rectBottom >= polyTop[i] && rectTop <= polyBottom[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isTriInside(int x1, int y1, int x2, int y2, int x3, int y3) {
+        if (polygons.isEmpty()) {
+            return false;
+        }
+
+        // The triangle's box is grown by the padding, which lets through triangles that only touch the border
+        int triLeft = Math.min(Math.min(x1, x2), x3) - padding;
+        int triRight = Math.max(Math.max(x1, x2), x3) + padding;
+        int triTop = Math.min(Math.min(y1, y2), y3) - padding;
+        int triBottom = Math.max(Math.max(y1, y2), y3) + padding;
+        if (triRight < left || triLeft > right || triBottom < top || triTop > bottom) {
+            return false;
+        }
+
+        int rowStart = rowOf(Math.max(triTop, top));
+        int rowEnd = rowOf(Math.min(triBottom, bottom));
+        int colStart = columnOf(Math.max(triLeft, left));
+        int colEnd = columnOf(Math.min(triRight, right));
+        for (int row = rowStart; row <= rowEnd; row++) {
+            for (int col = colStart; col <= colEnd; col++) {
+                int bin = row * columns + col;
+                for (int e = binStart[bin]; e < binStart[bin + 1]; e++) {
+                    int i = binEntries[e];
+                    if (triRight < polyLeft[i] || triLeft > polyRight[i] || triBottom < polyTop[i] || triTop > polyBottom[i]) {
+                        continue;
+                    }
+
+                    // A polygon spanning several bins is only tested in the first bin it shares with the triangle
+                    if (row != Math.max(rowStart, rowOf(polyTop[i])) || col != Math.max(colStart, columnOf(polyLeft[i]))) {
+                        continue;
+                    }
+                    if (intersects(polygons.get(i), x1, y1, x2, y2, x3, y3, triLeft, triTop, triRight - triLeft, triBottom - triTop)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Inaccurate but fast check if the triangle touches the polygon
+    private static boolean intersects(Polygon p, int x1, int y1, int x2, int y2, int x3, int y3, int x, int y, int w, int h) {
+        return p.contains(x1, y1) || p.contains(x2, y2) || p.contains(x3, y3) || p.intersects(x, y, w, h);
+    }
+
+    private int columnOf(int x) {
+        return (int) (((long) x - left) >> binShift);
+    }
+
+    private int rowOf(int y) {
+        return (int) (((long) y - top) >> binShift);
+    }
+}
@@ -0,0 +1,52 @@
+package com.notloc.targettruetile;
+
+import lombok.Getter;
+
+// Time budget for one overlay render, handed out to NPCs in priority order.
+// Tile projection is cheap and is checked against the time already spent, occlusion runs as one batch at the end of the
+// frame so each NPC is admitted against the average cost per occluded actor measured over recent frames.
+// The tiles are drawn in one batch between the two, its time counts against the budget but it is never cut back.
+// NPCs that don't fit fall back to cheaper rendering, each fallback is counted as degraded.
+class FrameBudget {
+    private static final int COST_SMOOTHING = 8; // frames
+
+    private long budgetNanos;
+    private long start;
+    private int admitted;
+    private long occlusionCost; // nanos per occluded actor, smoothed
+
+    @Getter
+    private int degraded;
+
+    // A budget of 0 never runs out
+    public void begin(int budgetMicros) {
+        budgetNanos = budgetMicros * 1000L;
+        start = System.nanoTime();
+        admitted = 0;
+        degraded = 0;
+    }
+
+    public boolean hasTime() {
+        return budgetNanos <= 0 || System.nanoTime() - start < budgetNanos;
+    }
+
+    // Whether one more actor's occlusion is expected to fit in what is left of the budget
+    public boolean admitOcclusion() {
+        if (budgetNanos > 0 && System.nanoTime() - start + (admitted + 1) * occlusionCost > budgetNanos) {
+            return false;
+        }
+        admitted++;
+        return true;
+    }
+
+    public void countDegraded() {
+        degraded++;
+    }
+
+    public void recordOcclusion(long nanos, int actors) {
+        if (actors == 0) {
+            return;
+        }
+        occlusionCost += (nanos / actors - occlusionCost) / COST_SMOOTHING;
+    }
+}
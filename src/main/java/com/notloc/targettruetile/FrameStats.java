@@ -0,0 +1,104 @@
+package com.notloc.targettruetile;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+// Rolling timings of the overlay's render phases, plus counts from the last occlusion pass.
+// Only collected while the performance stats overlay is enabled.
+class FrameStats {
+    private static final int WINDOW = 256;
+
+    enum Phase {
+        TARGET_TILES("Target tiles"),
+        HOVER("Hover lookup"),
+        TAGGED_TILES("Tagged tiles"),
+        DRAW("Tile drawing"),
+        OCCLUSION("Occlusion"),
+        TOTAL("Total");
+
+        @Getter
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private final long[][] samples = new long[Phase.values().length][WINDOW];
+    private final int[] sampleCounts = new int[Phase.values().length];
+    private final long[] sorted = new long[WINDOW];
+
+    @Getter
+    private int trianglesProjected;
+    @Getter
+    private int backfaceCulled;
+    @Getter
+    private int decimated;
+    @Getter
+    private int filterCulled;
+    @Getter
+    private int mergedPolygons;
+    @Getter
+    private int actorsSkipped;
+    @Getter
+    private int actorsCoarse;
+    @Getter
+    private int actorsBeyondDetail;
+    // Tiles and occlusions cut back to stay in the frame budget in the last frame, and frames with any since the stats were reset
+    @Getter
+    private int degradedNpcs;
+    @Getter
+    private int degradedFrames;
+
+    public void record(Phase phase, long nanos) {
+        int p = phase.ordinal();
+        samples[p][sampleCounts[p] % WINDOW] = nanos;
+        sampleCounts[p]++;
+    }
+
+    public void recordBudget(FrameBudget budget) {
+        degradedNpcs = budget.getDegraded();
+        if (degradedNpcs > 0) {
+            degradedFrames++;
+        }
+    }
+
+    public void recordOcclusion(OcclusionScratch scratch) {
+        trianglesProjected = scratch.getTrianglesProjected();
+        backfaceCulled = scratch.getBackfaceCulled();
+        decimated = scratch.getDecimated();
+        filterCulled = scratch.getFilterCulled();
+        mergedPolygons = scratch.getMergedPolygons();
+        actorsSkipped = scratch.getActorsSkipped();
+        actorsCoarse = scratch.getActorsCoarse();
+        actorsBeyondDetail = scratch.getActorsBeyondDetail();
+    }
+
+    // Percentile of the recorded window in nanoseconds, 0 if nothing has been recorded yet
+    public long percentile(Phase phase, double percentile) {
+        int p = phase.ordinal();
+        int n = Math.min(sampleCounts[p], WINDOW);
+        if (n == 0) {
+            return 0;
+        }
+
+        System.arraycopy(samples[p], 0, sorted, 0, n);
+        Arrays.sort(sorted, 0, n);
+        return sorted[Math.min(n - 1, (int) (n * percentile))];
+    }
+
+    public void reset() {
+        Arrays.fill(sampleCounts, 0);
+        trianglesProjected = 0;
+        backfaceCulled = 0;
+        decimated = 0;
+        filterCulled = 0;
+        mergedPolygons = 0;
+        actorsSkipped = 0;
+        actorsCoarse = 0;
+        actorsBeyondDetail = 0;
+        degradedNpcs = 0;
+        degradedFrames = 0;
+    }
+}
@@ -30,7 +30,6 @@ import java.util.*;
 import java.util.List;
 
 import net.runelite.api.*;
-import net.runelite.api.coords.LocalPoint;
 
 // Adapted from Improved Tile Indicators
 // https://github.com/LeikvollE/tileindicators
@@ -38,51 +37,42 @@ import net.runelite.api.coords.LocalPoint;
 // Allows us to display tile indicators beneath actors
 public class ImprovedTileIndicatorsUtil {
 
-    public static void removePlayerFast(final Client client, final Graphics2D graphics, final Player player, final List<Polygon> filter) {
-        final int localZ = Perspective.getFootprintTileHeight(client, player.getLocalLocation(), client.getTopLevelWorldView().getPlane(), player.getFootprintSize()) - player.getAnimationHeightOffset();
-        removeActorFast(client, graphics, player, localZ, filter);
+    public static int getPlayerLocalZ(final Client client, final Player player) {
+        return Perspective.getFootprintTileHeight(client, player.getLocalLocation(), client.getTopLevelWorldView().getPlane(), player.getFootprintSize()) - player.getAnimationHeightOffset();
     }
 
-    public static void removeNpcFast(final Client client, final Graphics2D graphics, final NPC npc, final List<Polygon> filter) {
-        final int localZ = Perspective.getFootprintTileHeight(client, npc.getLocalLocation(), client.getTopLevelWorldView().getPlane(), npc.getComposition().getFootprintSize()) - npc.getAnimationHeightOffset();
-        removeActorFast(client, graphics, npc, localZ, filter);
+    public static int getNpcLocalZ(final Client client, final NPC npc) {
+        return Perspective.getFootprintTileHeight(client, npc.getLocalLocation(), client.getTopLevelWorldView().getPlane(), npc.getComposition().getFootprintSize()) - npc.getAnimationHeightOffset();
     }
 
-    private static void removeActorFast(final Client client, final Graphics2D graphics, final Actor actor, final int localZ, final List<Polygon> filter) {
-        WorldView worldView = client.getTopLevelWorldView();
-        if (worldView == null) {
+    static void fillPolygons(final Graphics2D graphics, final List<Polygon> polygons) {
+        if (polygons.isEmpty()) {
             return;
         }
 
-        final int clipX1 = client.getViewportXOffset();
-        final int clipY1 = client.getViewportYOffset();
-        final int clipX2 = client.getViewportWidth() + clipX1;
-        final int clipY2 = client.getViewportHeight() + clipY1;
         Object origAA = graphics.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
         graphics.setRenderingHint(
                 RenderingHints.KEY_ANTIALIASING,
                 RenderingHints.VALUE_ANTIALIAS_OFF);
-        Model model = actor.getModel();
-        if (model == null) {
-            return;
-        }
-
-        int vCount = model.getVerticesCount();
-        float[] x3d = model.getVerticesX();
-        float[] y3d = model.getVerticesY();
-        float[] z3d = model.getVerticesZ();
-
-        int[] x2d = new int[vCount];
-        int[] y2d = new int[vCount];
-
-        final LocalPoint lp = actor.getLocalLocation();
+        Composite orig = graphics.getComposite();
+        graphics.setComposite(AlphaComposite.Clear);
+        graphics.setColor(Color.WHITE);
 
-        final int localX = lp.getX();
-        final int localY = lp.getY();
+        for (int i = 0; i < polygons.size(); i++) {
+            graphics.fill(polygons.get(i));
+        }
 
-        int rotation = actor.getCurrentOrientation();
+        graphics.setComposite(orig);
+        graphics.setRenderingHint(
+                RenderingHints.KEY_ANTIALIASING,
+                origAA);
+    }
 
-        Perspective.modelToCanvas(client, vCount, localX, localY, localZ, rotation, x3d, z3d, y3d, x2d, y2d);
+    // Projects the model into x2d/y2d, returns whether any vertex landed inside the clip
+    static boolean projectModel(final CameraSnapshot camera, final int vCount, final int localX, final int localY, final int localZ, final int rotation,
+                                final float[] x3d, final float[] y3d, final float[] z3d, final int[] x2d, final int[] y2d,
+                                final int clipX1, final int clipY1, final int clipX2, final int clipY2) {
+        camera.project(vCount, localX, localY, localZ, rotation, x3d, y3d, z3d, x2d, y2d);
 
         boolean anyVisible = false;
 
@@ -94,53 +84,56 @@ public class ImprovedTileIndicatorsUtil {
             boolean visibleY = y >= clipY1 && y < clipY2;
             anyVisible |= visibleX && visibleY;
         }
+        return anyVisible;
+    }
 
-        if (!anyVisible) return;
-
-        int tCount = model.getFaceCount();
-        int[] tx = model.getFaceIndices1();
-        int[] ty = model.getFaceIndices2();
-        int[] tz = model.getFaceIndices3();
-
-        final byte[] triangleTransparencies = model.getFaceTransparencies();
-
-        Composite orig = graphics.getComposite();
-        graphics.setComposite(AlphaComposite.Clear);
-        graphics.setColor(Color.WHITE);
-
-        // We do our best to batch the triangles into as few polygons as possible to reduce the number of draw calls
-        PolygonBuilder polyBuilder = new PolygonBuilder();
-
+    // Passes the front facing, opaque triangles that touch the filter on to the sink, a null filter lets all of them through.
+    // Vertices first snap to the nearest point of a vertexGrid pixel grid, a power of two, 1 leaves them as projected.
+    // Snapping clusters nearby vertices, faces whose corners meet collapse and are dropped. Neighbouring faces share their
+    // snapped corners, so the faces left still cover the model's outline without gaps.
+    static void cullTriangles(final int tCount, final int vertexGrid, final int[] tx, final int[] ty, final int[] tz, final byte[] triangleTransparencies,
+                              final int[] x2d, final int[] y2d, final FilterIndex filter, final TriangleSink sink, final OcclusionScratch scratch) {
+        // Rounds to the nearest grid point, unprojected vertices stay at Integer.MIN_VALUE
+        final int half = vertexGrid >> 1;
+        final int mask = -vertexGrid;
+        int backfaces = 0;
+        int decimated = 0;
+        int filtered = 0;
         for (int i = 0; i < tCount; i++) {
-            // Cull tris facing away from the camera
-            if (getTriDirection(x2d[tx[i]], y2d[tx[i]], x2d[ty[i]], y2d[ty[i]], x2d[tz[i]], y2d[tz[i]]) >= 0)
+            int x1 = x2d[tx[i]] + half & mask;
+            int y1 = y2d[tx[i]] + half & mask;
+            int x2 = x2d[ty[i]] + half & mask;
+            int y2 = y2d[ty[i]] + half & mask;
+            int x3 = x2d[tz[i]] + half & mask;
+            int y3 = y2d[tz[i]] + half & mask;
+
+            // The direction is twice the signed area, negative for front faces
+            int direction = getTriDirection(x1, y1, x2, y2, x3, y3);
+
+            // Cull tris facing away from the camera, and front faces that collapsed onto the grid
+            if (direction >= 0)
             {
+                if (vertexGrid > 1 && getTriDirection(x2d[tx[i]], y2d[tx[i]], x2d[ty[i]], y2d[ty[i]], x2d[tz[i]], y2d[tz[i]]) < 0) {
+                    decimated++;
+                } else {
+                    backfaces++;
+                }
                 continue;
             }
 
             // Cull tris that are not in the filter
-            if (!isTriInsideFilter(x2d[tx[i]], y2d[tx[i]], x2d[ty[i]], y2d[ty[i]], x2d[tz[i]], y2d[tz[i]], filter))
+            if (filter != null && !filter.isTriInside(x1, y1, x2, y2, x3, y3))
             {
+                filtered++;
                 continue;
             }
 
             if (triangleTransparencies == null || (triangleTransparencies[i] & 255) < 254) {
-                polyBuilder.addTriangle(
-                        x2d[tx[i]], y2d[tx[i]],
-                        x2d[ty[i]], y2d[ty[i]],
-                        x2d[tz[i]], y2d[tz[i]]
-                );
+                sink.addTriangle(x1, y1, x2, y2, x3, y3);
             }
         }
 
-        for (Polygon polygon : polyBuilder.getPolygons()) {
-            graphics.fill(polygon);
-        }
-
-        graphics.setComposite(orig);
-        graphics.setRenderingHint(
-                RenderingHints.KEY_ANTIALIASING,
-                origAA);
+        scratch.countTriangles(tCount, backfaces, decimated, filtered);
     }
 
     private static int getTriDirection(int x1, int y1, int x2, int y2, int x3, int y3) {
@@ -150,134 +143,4 @@ public class ImprovedTileIndicatorsUtil {
         int y5 = y3 - y1;
         return x4 * y5 - y4 * x5;
     }
-
-    private static boolean isTriInsideFilter(int x1, int y1, int x2, int y2, int x3, int y3, List<Polygon> filter) {
-        // Inaccurate but fast check if any of the points are inside the filter
-        int left = Math.min(Math.min(x1, x2), x3);
-        int right = Math.max(Math.max(x1, x2), x3);
-        int top = Math.min(Math.min(y1, y2), y3);
-        int bottom = Math.max(Math.max(y1, y2), y3);
-
-        for (Polygon p : filter) {
-            if (p.contains(x1, y1) || p.contains(x2, y2) || p.contains(x3, y3)) {
-                return true;
-            }
-            if (p.intersects(left, top, right - left, bottom - top)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    // Merges triangles into larger polygons to reduce draw calls
-    // Quick and dirty implementation, definitely not optimal, but performance gains are still significant
-    private static class PolygonBuilder {
-        private final List<PolygonPrototype> polygons = new ArrayList<>();
-        private final Map<Edge, PolygonPrototype> polygonsByEdge = new HashMap<>();
-
-        public void addTriangle(int x1, int y1, int x2, int y2, int x3, int y3) {
-            Edge e1 = new Edge(x1, y1, x2, y2);
-            Edge e2 = new Edge(x2, y2, x3, y3);
-            Edge e3 = new Edge(x3, y3, x1, y1);
-
-            if (polygonsByEdge.containsKey(e1)) {
-                PolygonPrototype p = polygonsByEdge.get(e1);
-                p.insertEdgesAt(e1, e2, e3);
-                polygonsByEdge.remove(e1);
-                polygonsByEdge.put(e2, p);
-                polygonsByEdge.put(e3, p);
-            } else if (polygonsByEdge.containsKey(e2)) {
-                PolygonPrototype p = polygonsByEdge.get(e2);
-                p.insertEdgesAt(e2, e3, e1);
-                polygonsByEdge.remove(e2);
-                polygonsByEdge.put(e1, p);
-                polygonsByEdge.put(e3, p);
-            } else if (polygonsByEdge.containsKey(e3)) {
-                PolygonPrototype p = polygonsByEdge.get(e3);
-                p.insertEdgesAt(e3, e1, e2);
-                polygonsByEdge.remove(e3);
-                polygonsByEdge.put(e1, p);
-                polygonsByEdge.put(e2, p);
-            } else {
-                PolygonPrototype p = new PolygonPrototype(e1, e2, e3);
-                polygonsByEdge.put(e1, p);
-                polygonsByEdge.put(e2, p);
-                polygonsByEdge.put(e3, p);
-                polygons.add(p);
-            }
-        }
-
-        public List<Polygon> getPolygons() {
-            List<Polygon> result = new ArrayList<>();
-            for (PolygonPrototype p : polygons) {
-                result.add(p.toPolygon());
-            }
-            return result;
-        }
-    }
-
-    private static class PolygonPrototype {
-        LinkedList<Edge> edges = new LinkedList<>();
-
-        public PolygonPrototype(Edge... edges) {
-            this.edges.addAll(Arrays.asList(edges));
-        }
-
-        public void insertEdgesAt(Edge edgeToReplace, Edge... newEdges) {
-            int index = edges.indexOf(edgeToReplace);
-            if (index == -1) {
-                return;
-            }
-
-            edges.set(index, newEdges[0]);
-            for (int i = 1; i < newEdges.length; i++) {
-                edges.add(index + i, newEdges[i]);
-            }
-        }
-
-        public Polygon toPolygon() {
-            int[] x = new int[edges.size()];
-            int[] y = new int[edges.size()];
-
-            for (int i = 0; i < edges.size(); i++) {
-                x[i] = edges.get(i).x1;
-                y[i] = edges.get(i).y1;
-            }
-
-            return new Polygon(x, y, edges.size());
-        }
-    }
-
-    private static class Edge {
-        public final int x1;
-        public final int y1;
-
-        public final int x2;
-        public final int y2;
-
-        public Edge(int x1, int y1, int x2, int y2) {
-            this.x1 = x1;
-            this.y1 = y1;
-            this.x2 = x2;
-            this.y2 = y2;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == this) {
-                return true;
-            }
-            if (!(obj instanceof Edge)) {
-                return false;
-            }
-            Edge e = (Edge) obj;
-            return (e.x1 == x1 && e.y1 == y1 && e.x2 == x2 && e.y2 == y2) ||
-                    (e.x1 == x2 && e.y1 == y2 && e.x2 == x1 && e.y2 == y1);
-        }
-
-        @Override
-        public int hashCode() {
-            return x1 + y1 + x2 + y2;
-        }
-    }
 }
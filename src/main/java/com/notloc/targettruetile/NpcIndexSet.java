@@ -0,0 +1,76 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.NPC;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Predicate;
+
+// Set of NPCs addressed by NPC index: membership is a bit test and iterating walks the set bits in index order.
+// An index only holds one NPC, adding an NPC replaces whichever NPC had its index before.
+// Iterate without allocating as: for (int i = set.nextIndex(0); i >= 0; i = set.nextIndex(i + 1)) set.get(i)
+class NpcIndexSet {
+    private final BitSet bits = new BitSet();
+    private NPC[] npcs = new NPC[256];
+
+    public boolean add(NPC npc) {
+        int index = npc.getIndex();
+        if (contains(npc)) {
+            return false;
+        }
+        if (index >= npcs.length) {
+            npcs = Arrays.copyOf(npcs, Math.max(index + 1, npcs.length * 2));
+        }
+        npcs[index] = npc;
+        bits.set(index);
+        return true;
+    }
+
+    public boolean remove(NPC npc) {
+        if (!contains(npc)) {
+            return false;
+        }
+        int index = npc.getIndex();
+        npcs[index] = null;
+        bits.clear(index);
+        return true;
+    }
+
+    public boolean contains(NPC npc) {
+        int index = npc.getIndex();
+        return bits.get(index) && npcs[index] == npc;
+    }
+
+    public boolean isEmpty() {
+        return bits.isEmpty();
+    }
+
+    public int size() {
+        return bits.cardinality();
+    }
+
+    // The next index at or after the given one holding an NPC, -1 if there are none
+    public int nextIndex(int from) {
+        return bits.nextSetBit(from);
+    }
+
+    public NPC get(int index) {
+        return bits.get(index) ? npcs[index] : null;
+    }
+
+    public void removeIf(Predicate<NPC> predicate) {
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            if (predicate.test(npcs[i])) {
+                npcs[i] = null;
+                bits.clear(i);
+            }
+        }
+    }
+
+    public void clear() {
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            npcs[i] = null;
+        }
+        bits.clear();
+    }
+}
@@ -0,0 +1,24 @@
+package com.notloc.targettruetile;
+
+// How much of an actor's model clears the tiles beneath it, picked from how large the actor's tile is on screen.
+// Far off actors cover only a few pixels of tile, their model can be clustered onto a coarser grid, or skipped entirely.
+enum OcclusionDetail {
+    FULL(1),
+    COARSE(4), // vertices snap to a 4 pixel grid
+    NONE(0);
+
+    // Size in pixels of the screen grid projected vertices snap to, a power of two, 1 for the exact model
+    final int vertexGrid;
+
+    OcclusionDetail(int vertexGrid) {
+        this.vertexGrid = vertexGrid;
+    }
+
+    // The area is in screen pixels, negative when unknown
+    static OcclusionDetail forTileArea(int area, RenderStyle style) {
+        if (area < 0 || area >= style.lodFullArea) {
+            return FULL;
+        }
+        return area < style.lodSkipArea ? NONE : COARSE;
+    }
+}
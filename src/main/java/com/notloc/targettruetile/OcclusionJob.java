@@ -0,0 +1,289 @@
+package com.notloc.targettruetile;
+
+import lombok.Getter;
+import net.runelite.api.AABB;
+import net.runelite.api.Actor;
+import net.runelite.api.Client;
+import net.runelite.api.Model;
+import net.runelite.api.coords.LocalPoint;
+
+import java.awt.*;
+import java.util.Collections;
+import java.util.List;
+
+// One actor's share of the occlusion pass.
+// capture() copies everything needed from the client, the camera and the model on the client thread. compute() then
+// only touches those copies, the actor's cache entry and this job's scratch, so jobs can run on any thread.
+class OcclusionJob {
+    @Getter
+    private final OcclusionScratch scratch = new OcclusionScratch();
+
+    private final CameraSnapshot camera = new CameraSnapshot();
+    private ActorProjectionCache.Entry entry;
+    private boolean captured;
+
+    // Projection key
+    private Model model;
+    private int shapeKey;
+    private int animationFrame;
+    private int poseAnimationFrame;
+    private int orientation;
+    private int localX, localY, localZ;
+    private int cameraVersion;
+
+    // Copies of the model data, the client may rewrite the model's own buffers at any time.
+    // These grow to fit the largest model captured and are reused.
+    private int vertexCount;
+    private float[] verticesX = new float[0], verticesY = new float[0], verticesZ = new float[0];
+    private int faceCount;
+    private int[] faces1 = new int[0], faces2 = new int[0], faces3 = new int[0];
+    private byte[] transparencies = new byte[0];
+    private boolean hasTransparencies;
+    private int vertexGrid;
+
+    // Model space bounding box for the current orientation
+    private boolean hasBox;
+    private int boxCenterX, boxCenterY, boxCenterZ;
+    private int boxExtremeX, boxExtremeY, boxExtremeZ;
+    private final float[] cornersX = new float[8];
+    private final float[] cornersY = new float[8];
+    private final float[] cornersZ = new float[8];
+    private final int[] corners2dX = new int[8];
+    private final int[] corners2dY = new int[8];
+
+    private int clipX1, clipY1, clipX2, clipY2;
+    private boolean skipped;
+
+    // Returns false if the actor has nothing to occlude with, or was already captured this frame.
+    // Projected vertices snap to a grid of vertexGrid pixels before clearing, 1 for the exact model.
+    // The filter and mode are only read to tell whether the cached geometry can be reused.
+    public boolean capture(Client client, Actor actor, int localZ, int vertexGrid, ActorProjectionCache cache,
+                           FilterIndex filter, OcclusionMode mode) {
+        release();
+        scratch.reset();
+
+        Model model = actor.getModel();
+        if (model == null) {
+            return false;
+        }
+
+        ActorProjectionCache.Entry entry = cache.get(actor);
+        if (entry == null) {
+            return false;
+        }
+
+        LocalPoint lp = actor.getLocalLocation();
+        this.entry = entry;
+        this.model = model;
+        this.shapeKey = ActorProjectionCache.shapeKey(actor, model);
+        this.animationFrame = actor.getAnimationFrame();
+        this.poseAnimationFrame = actor.getPoseAnimationFrame();
+        this.orientation = actor.getCurrentOrientation();
+        this.localX = lp.getX();
+        this.localY = lp.getY();
+        this.localZ = localZ;
+        this.cameraVersion = cache.getCameraVersion();
+
+        this.vertexGrid = vertexGrid;
+
+        // The vertices are only read to project them and the faces to rebuild the geometry, hull mode never reads the
+        // faces. Whatever the cache already holds doesn't need copying.
+        boolean projected = matchesProjection() && entry.isVerticesProjected();
+        boolean rebuild = !projected || entry.isAnyVisible() && !entry.matchesGeometry(geometryVersion(filter, mode), mode, vertexGrid);
+        copyModel(model, !projected, rebuild && mode != OcclusionMode.HULL);
+        if (vertexGrid > 1) {
+            scratch.countCoarse();
+        }
+
+        AABB box = model.getAABB(orientation);
+        this.hasBox = box != null;
+        if (hasBox) {
+            boxCenterX = box.getCenterX();
+            boxCenterY = box.getCenterY();
+            boxCenterZ = box.getCenterZ();
+            boxExtremeX = box.getExtremeX();
+            boxExtremeY = box.getExtremeY();
+            boxExtremeZ = box.getExtremeZ();
+        }
+
+        camera.capture(client);
+        this.clipX1 = camera.getViewportX();
+        this.clipY1 = camera.getViewportY();
+        this.clipX2 = camera.getViewportWidth() + clipX1;
+        this.clipY2 = camera.getViewportHeight() + clipY1;
+
+        this.captured = true;
+        return true;
+    }
+
+    private void copyModel(Model model, boolean copyVertices, boolean copyFaces) {
+        vertexCount = model.getVerticesCount();
+        if (copyVertices) {
+            if (verticesX.length < vertexCount) {
+                verticesX = new float[vertexCount];
+                verticesY = new float[vertexCount];
+                verticesZ = new float[vertexCount];
+            }
+            System.arraycopy(model.getVerticesX(), 0, verticesX, 0, vertexCount);
+            System.arraycopy(model.getVerticesY(), 0, verticesY, 0, vertexCount);
+            System.arraycopy(model.getVerticesZ(), 0, verticesZ, 0, vertexCount);
+        }
+
+        faceCount = model.getFaceCount();
+        if (!copyFaces) {
+            return;
+        }
+        if (faces1.length < faceCount) {
+            faces1 = new int[faceCount];
+            faces2 = new int[faceCount];
+            faces3 = new int[faceCount];
+            transparencies = new byte[faceCount];
+        }
+        System.arraycopy(model.getFaceIndices1(), 0, faces1, 0, faceCount);
+        System.arraycopy(model.getFaceIndices2(), 0, faces2, 0, faceCount);
+        System.arraycopy(model.getFaceIndices3(), 0, faces3, 0, faceCount);
+
+        byte[] modelTransparencies = model.getFaceTransparencies();
+        hasTransparencies = modelTransparencies != null;
+        if (hasTransparencies) {
+            System.arraycopy(modelTransparencies, 0, transparencies, 0, faceCount);
+        }
+    }
+
+    // Faces this job still has to process against the filter, 0 when the cached result can be used as is
+    public int getPendingFaces(FilterIndex filter, OcclusionMode mode) {
+        if (!captured) {
+            return 0;
+        }
+        if (!matchesProjection() || !entry.isVerticesProjected()) {
+            return faceCount;
+        }
+        return entry.isAnyVisible() && !entry.matchesGeometry(geometryVersion(filter, mode), mode, vertexGrid) ? faceCount : 0;
+    }
+
+    public void compute(FilterIndex filter, OcclusionMode mode) {
+        if (!captured) {
+            return;
+        }
+
+        if (!matchesProjection()) {
+            entry.setProjection(model, shapeKey, animationFrame, poseAnimationFrame, orientation, localX, localY, localZ, cameraVersion);
+            if (hasBox) {
+                projectBounds();
+            }
+        }
+
+        // Skip the actor before touching its vertices if its screen bounds can't reach the viewport or any tile
+        skipped = entry.isBoundsKnown() && (
+                entry.getBoundsRight() < clipX1 || entry.getBoundsLeft() >= clipX2
+                || entry.getBoundsBottom() < clipY1 || entry.getBoundsTop() >= clipY2
+                || !filter.touches(entry.getBoundsLeft(), entry.getBoundsTop(), entry.getBoundsRight(), entry.getBoundsBottom()));
+        if (skipped) {
+            scratch.countSkipped();
+            return;
+        }
+
+        if (!entry.isVerticesProjected()) {
+            entry.ensureVertexCapacity(vertexCount);
+            boolean anyVisible = ImprovedTileIndicatorsUtil.projectModel(camera, vertexCount, localX, localY, localZ, orientation,
+                    verticesX, verticesY, verticesZ, entry.getX2d(), entry.getY2d(), clipX1, clipY1, clipX2, clipY2);
+            entry.setVerticesProjected(anyVisible);
+        }
+
+        int version = geometryVersion(filter, mode);
+        if (!entry.isAnyVisible() || entry.matchesGeometry(version, mode, vertexGrid)) {
+            return;
+        }
+
+        if (mode == OcclusionMode.HULL) {
+            // The outline of every projected vertex, faces aren't looked at
+            List<Polygon> polygons = scratch.getHull().build(vertexCount, entry.getX2d(), entry.getY2d());
+            scratch.countPolygons(polygons.size());
+            entry.setPolygons(polygons, version, mode, vertexGrid);
+            return;
+        }
+
+        // With a clip in place Java2D keeps the clear inside the tiles, so the triangles don't need testing
+        FilterIndex triangleFilter = mode == OcclusionMode.CLIP ? null : filter;
+
+        if (mode == OcclusionMode.MASK) {
+            TriangleList triangles = entry.getTriangles();
+            triangles.clear();
+            ImprovedTileIndicatorsUtil.cullTriangles(faceCount, vertexGrid, faces1, faces2, faces3, hasTransparencies ? transparencies : null,
+                    entry.getX2d(), entry.getY2d(), triangleFilter, triangles, scratch);
+            entry.setTriangles(version, vertexGrid);
+        } else {
+            // We do our best to batch the triangles into as few polygons as possible to reduce the number of draw calls
+            TriangleMerger merger = scratch.getMerger();
+            merger.reset();
+            ImprovedTileIndicatorsUtil.cullTriangles(faceCount, vertexGrid, faces1, faces2, faces3, hasTransparencies ? transparencies : null,
+                    entry.getX2d(), entry.getY2d(), triangleFilter, merger, scratch);
+            List<Polygon> polygons = merger.getPolygons();
+            scratch.countPolygons(polygons.size());
+            entry.setPolygons(polygons, version, mode, vertexGrid);
+        }
+    }
+
+    // The clear polygons to fill, valid after compute() in polygon, clip and hull mode
+    public List<Polygon> getPolygons() {
+        return hasGeometry() ? entry.getPolygons() : Collections.emptyList();
+    }
+
+    // The clear triangles to rasterize, valid after compute() in mask mode
+    public TriangleList getTriangles() {
+        return hasGeometry() ? entry.getTriangles() : null;
+    }
+
+    // Clipped geometry doesn't depend on the filter, so it survives tiles changing
+    private static int geometryVersion(FilterIndex filter, OcclusionMode mode) {
+        return mode == OcclusionMode.CLIP || mode == OcclusionMode.HULL ? 0 : filter.getVersion();
+    }
+
+    private boolean hasGeometry() {
+        return captured && !skipped && entry.isAnyVisible();
+    }
+
+    // Drops the references to the model so it isn't kept alive between frames
+    public void release() {
+        captured = false;
+        skipped = false;
+        entry = null;
+        model = null;
+    }
+
+    // Projects the corners of the bounding box, padded a unit to cover rounding in the box and the projection.
+    // Leaves the bounds unknown if a corner lands behind the camera, the full path then decides.
+    private void projectBounds() {
+        int ex = boxExtremeX + 1;
+        int ey = boxExtremeY + 1;
+        int ez = boxExtremeZ + 1;
+        for (int i = 0; i < 8; i++) {
+            cornersX[i] = boxCenterX + ((i & 1) == 0 ? -ex : ex);
+            cornersY[i] = boxCenterY + ((i & 2) == 0 ? -ey : ey);
+            cornersZ[i] = boxCenterZ + ((i & 4) == 0 ? -ez : ez);
+        }
+
+        // The box is already rotated to the actor's orientation
+        ImprovedTileIndicatorsUtil.projectModel(camera, 8, localX, localY, localZ, 0,
+                cornersX, cornersY, cornersZ, corners2dX, corners2dY, clipX1, clipY1, clipX2, clipY2);
+
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < 8; i++) {
+            if (corners2dX[i] == Integer.MIN_VALUE) {
+                return;
+            }
+            left = Math.min(left, corners2dX[i]);
+            top = Math.min(top, corners2dY[i]);
+            right = Math.max(right, corners2dX[i]);
+            bottom = Math.max(bottom, corners2dY[i]);
+        }
+        entry.setBounds(left - 1, top - 1, right + 1, bottom + 1);
+    }
+
+    private boolean matchesProjection() {
+        return entry.matchesProjection(model, shapeKey, animationFrame, poseAnimationFrame, orientation, localX, localY, localZ, cameraVersion);
+    }
+}
@@ -0,0 +1,107 @@
+package com.notloc.targettruetile;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+// Software mask for the occlusion pass, covering only the area of the frame's tile polygons.
+// Triangles are scanline rasterized into an int ARGB image, which is then cut out of the overlay with a single draw.
+// Pixels are sampled at their integer coordinates with the top and left edges inclusive, which is how Java2D fills
+// non antialiased polygons with the default stroke control, so both modes clear the same area give or take an edge pixel.
+class OcclusionMask {
+    private static final int OPAQUE = 0xFF000000;
+    // Off screen vertices come back as huge values, triangles that far out are dropped rather than overflowing the edge maths
+    private static final int MAX_COORDINATE = 1 << 16;
+
+    private BufferedImage image;
+    private int[] pixels;
+    private int stride;
+
+    private int left, top, width, height;
+    private boolean drawn;
+
+    // Prepares a cleared mask over the rectangle, bounds inclusive. Returns false if it is empty.
+    public boolean begin(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.width = Math.max(0, right - left + 1);
+        this.height = Math.max(0, bottom - top + 1);
+        this.drawn = false;
+        if (width == 0 || height == 0) {
+            return false;
+        }
+
+        if (image == null || image.getWidth() < width || image.getHeight() < height) {
+            int imageWidth = Math.max(width, image == null ? 0 : image.getWidth());
+            int imageHeight = Math.max(height, image == null ? 0 : image.getHeight());
+            image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            stride = imageWidth;
+        } else {
+            for (int row = 0; row < height; row++) {
+                Arrays.fill(pixels, row * stride, row * stride + width, 0);
+            }
+        }
+        return true;
+    }
+
+    public void fillTriangles(TriangleList triangles) {
+        int[] c = triangles.getCoordinates();
+        for (int i = 0, n = triangles.getSize() * 6; i < n; i += 6) {
+            fillTriangle(c[i], c[i + 1], c[i + 2], c[i + 3], c[i + 4], c[i + 5]);
+        }
+    }
+
+    // Clears everything under the mask out of the graphics
+    public void apply(Graphics2D graphics) {
+        if (!drawn) {
+            return;
+        }
+
+        Composite orig = graphics.getComposite();
+        graphics.setComposite(AlphaComposite.DstOut);
+        graphics.drawImage(image, left, top, left + width, top + height, 0, 0, width, height, null);
+        graphics.setComposite(orig);
+    }
+
+    private void fillTriangle(int x1, int y1, int x2, int y2, int x3, int y3) {
+        if (!fits(x1) || !fits(y1) || !fits(x2) || !fits(y2) || !fits(x3) || !fits(y3)) {
+            return;
+        }
+
+        // Sort the vertices top to bottom
+        int t;
+        if (y1 > y2) { t = x1; x1 = x2; x2 = t; t = y1; y1 = y2; y2 = t; }
+        if (y2 > y3) { t = x2; x2 = x3; x3 = t; t = y2; y2 = y3; y3 = t; }
+        if (y1 > y2) { t = x1; x1 = x2; x2 = t; t = y1; y1 = y2; y2 = t; }
+
+        // Rows in [y1, y3), each filling the columns in [left edge, right edge)
+        int rowStart = Math.max(y1, top);
+        int rowEnd = Math.min(y3, top + height);
+        int right = left + width;
+        for (int y = rowStart; y < rowEnd; y++) {
+            int xa = edgeColumn(x1, y1, x3, y3, y);
+            int xb = y < y2 ? edgeColumn(x1, y1, x2, y2, y) : edgeColumn(x2, y2, x3, y3, y);
+            int from = Math.max(Math.min(xa, xb), left);
+            int to = Math.min(Math.max(xa, xb), right);
+            if (from < to) {
+                int offset = (y - top) * stride - left;
+                Arrays.fill(pixels, offset + from, offset + to, OPAQUE);
+                drawn = true;
+            }
+        }
+    }
+
+    // First column at or right of where the edge crosses the row
+    private static int edgeColumn(int x0, int y0, int x1, int y1, int y) {
+        // ceil(x0 + (y - y0) * (x1 - x0) / (y1 - y0)), kept in integers
+        long dy = y1 - y0;
+        long numerator = (long) x0 * dy + (long) (y - y0) * (x1 - x0);
+        return (int) -Math.floorDiv(-numerator, dy);
+    }
+
+    private static boolean fits(int v) {
+        return v > -MAX_COORDINATE && v < MAX_COORDINATE;
+    }
+}
@@ -0,0 +1,8 @@
+package com.notloc.targettruetile;
+
+public enum OcclusionMode {
+    POLYGON,
+    CLIP,
+    MASK,
+    HULL
+}
@@ -0,0 +1,197 @@
+package com.notloc.targettruetile;
+
+import lombok.Getter;
+import net.runelite.api.Actor;
+import net.runelite.api.Client;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Runs the occlusion pass for a frame in two stages.
+// The compute stage projects, culls and merges each actor, on the common ForkJoin pool when there is enough work to share.
+// The composite stage then clears under the actors on the render thread, either by filling each actor's merged
+// polygons in the order they were added, optionally clipped to the tiles, or by rasterizing every actor into one
+// mask that is cut out in a single draw. Hull mode fills each actor's projected convex hull clipped to the tiles,
+// trading precision around limbs for a cost that no longer depends on the face count.
+class OcclusionPass {
+    // Small scenes stay on the render thread, where scheduling overhead would outweigh the gain.
+    // These are untuned starting points, measure with OcclusionPassBenchmark on a multi-core machine before relying on them.
+    private static final int PARALLEL_MIN_JOBS = 2;
+    private static final int PARALLEL_MIN_FACES = 8000;
+
+    private final List<OcclusionJob> jobs = new ArrayList<>();
+    private int jobCount;
+
+    @Getter
+    private final ActorProjectionCache cache = new ActorProjectionCache();
+    @Getter
+    private final OcclusionScratch totals = new OcclusionScratch();
+    private final OcclusionMask mask = new OcclusionMask();
+
+    private FilterIndex filter;
+    private OcclusionMode mode;
+
+    // The filter must already be built for this frame, capture checks the cached geometry against it
+    public void begin(int cameraVersion, FilterIndex filter, OcclusionMode mode) {
+        cache.beginFrame(cameraVersion);
+        totals.reset();
+        jobCount = 0;
+        this.filter = filter;
+        this.mode = mode;
+    }
+
+    public void add(Client client, Actor actor, int localZ) {
+        add(client, actor, localZ, OcclusionDetail.FULL);
+    }
+
+    public void add(Client client, Actor actor, int localZ, OcclusionDetail detail) {
+        if (detail == OcclusionDetail.NONE) {
+            totals.countBeyondDetail();
+            return;
+        }
+        if (jobCount == jobs.size()) {
+            jobs.add(new OcclusionJob());
+        }
+        if (jobs.get(jobCount).capture(client, actor, localZ, detail.vertexGrid, cache, filter, mode)) {
+            jobCount++;
+        }
+    }
+
+    // Clears under the tile border as well as inside the tiles when the filter was built with one
+    public void run(Client client, Graphics2D graphics) {
+        compute(filter, mode);
+
+        if (mode == OcclusionMode.MASK) {
+            compositeMask(client, graphics, filter);
+        } else if (mode == OcclusionMode.CLIP || mode == OcclusionMode.HULL) {
+            compositeClipped(graphics, filter);
+        } else {
+            fillAll(graphics);
+        }
+
+        for (int i = 0; i < jobCount; i++) {
+            OcclusionJob job = jobs.get(i);
+            totals.add(job.getScratch());
+            job.release();
+        }
+        jobCount = 0;
+        filter = null;
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private void fillAll(Graphics2D graphics) {
+        for (int i = 0; i < jobCount; i++) {
+            ImprovedTileIndicatorsUtil.fillPolygons(graphics, jobs.get(i).getPolygons());
+        }
+    }
+
+    // Java2D keeps the fills inside the tiles, the triangles were not tested against them.
+    // A clip can't be a union of shapes without costly area math, so the outer half of the border is cleared in a second
+    // pass clipped to the stroked outlines. Clearing twice is harmless.
+    private void compositeClipped(Graphics2D graphics, FilterIndex filter) {
+        if (filter.isEmpty()) {
+            return;
+        }
+
+        Shape clip = graphics.getClip();
+        graphics.clip(filter.getUnion());
+        fillAll(graphics);
+        graphics.setClip(clip);
+
+        Shape border = filter.getBorder();
+        if (border != null) {
+            graphics.clip(border);
+            fillAll(graphics);
+            graphics.setClip(clip);
+        }
+    }
+
+    // The mask only needs to cover the visible part of the tiles and their border, nothing outside them is ever cleared.
+    // The border reaches past the tiles by half its width, the same stroked outline as the clipped modes bounds it.
+    private void compositeMask(Client client, Graphics2D graphics, FilterIndex filter) {
+        if (filter.isEmpty()) {
+            return;
+        }
+
+        int left = filter.getLeft();
+        int top = filter.getTop();
+        int right = filter.getRight();
+        int bottom = filter.getBottom();
+        Shape border = filter.getBorder();
+        if (border != null) {
+            Rectangle bounds = border.getBounds();
+            left = Math.min(left, bounds.x);
+            top = Math.min(top, bounds.y);
+            right = Math.max(right, bounds.x + bounds.width);
+            bottom = Math.max(bottom, bounds.y + bounds.height);
+        }
+
+        int clipX1 = client.getViewportXOffset();
+        int clipY1 = client.getViewportYOffset();
+        int clipX2 = client.getViewportWidth() + clipX1;
+        int clipY2 = client.getViewportHeight() + clipY1;
+        if (!mask.begin(Math.max(left, clipX1), Math.max(top, clipY1),
+                Math.min(right, clipX2 - 1), Math.min(bottom, clipY2 - 1))) {
+            return;
+        }
+
+        for (int i = 0; i < jobCount; i++) {
+            TriangleList triangles = jobs.get(i).getTriangles();
+            if (triangles != null) {
+                mask.fillTriangles(triangles);
+            }
+        }
+        mask.apply(graphics);
+    }
+
+    private void compute(FilterIndex filter, OcclusionMode mode) {
+        int pendingJobs = 0;
+        int pendingFaces = 0;
+        for (int i = 0; i < jobCount; i++) {
+            int faces = jobs.get(i).getPendingFaces(filter, mode);
+            if (faces > 0) {
+                pendingJobs++;
+                pendingFaces += faces;
+            }
+        }
+
+        if (pendingJobs >= PARALLEL_MIN_JOBS && pendingFaces >= PARALLEL_MIN_FACES && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            ForkJoinPool.commonPool().invoke(new ComputeTask(filter, mode, 0, jobCount));
+        } else {
+            for (int i = 0; i < jobCount; i++) {
+                jobs.get(i).compute(filter, mode);
+            }
+        }
+    }
+
+    // Splits the jobs in half until each task holds a single actor
+    private class ComputeTask extends RecursiveAction {
+        private final FilterIndex filter;
+        private final OcclusionMode mode;
+        private final int from, to;
+
+        ComputeTask(FilterIndex filter, OcclusionMode mode, int from, int to) {
+            this.filter = filter;
+            this.mode = mode;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                jobs.get(from).compute(filter, mode);
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new ComputeTask(filter, mode, from, mid), new ComputeTask(filter, mode, mid, to));
+        }
+    }
+}
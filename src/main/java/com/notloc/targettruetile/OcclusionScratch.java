@@ -0,0 +1,77 @@
+package com.notloc.targettruetile;
+
+import lombok.Getter;
+
+// Scratch state for the occlusion pass.
+// The merger and hull grow to fit the largest model seen and are reused every frame, so steady state occlusion allocates nothing.
+class OcclusionScratch {
+    @Getter
+    private final TriangleMerger merger = new TriangleMerger();
+    @Getter
+    private final ConvexHull hull = new ConvexHull();
+
+    // Counts for the current frame
+    @Getter
+    private int trianglesProjected;
+    @Getter
+    private int backfaceCulled;
+    @Getter
+    private int decimated;
+    @Getter
+    private int filterCulled;
+    @Getter
+    private int mergedPolygons;
+    @Getter
+    private int actorsSkipped;
+    @Getter
+    private int actorsCoarse;
+    @Getter
+    private int actorsBeyondDetail;
+
+    public void countTriangles(int projected, int backfaces, int decimated, int filtered) {
+        trianglesProjected += projected;
+        backfaceCulled += backfaces;
+        this.decimated += decimated;
+        filterCulled += filtered;
+    }
+
+    public void countPolygons(int polygons) {
+        mergedPolygons += polygons;
+    }
+
+    // An actor whose screen bounds missed the viewport or the filter
+    public void countSkipped() {
+        actorsSkipped++;
+    }
+
+    // An actor far enough away that its smallest faces don't clear
+    public void countCoarse() {
+        actorsCoarse++;
+    }
+
+    // An actor too far away to clear at all
+    public void countBeyondDetail() {
+        actorsBeyondDetail++;
+    }
+
+    // Folds in the counts of a worker's scratch
+    public void add(OcclusionScratch other) {
+        countTriangles(other.trianglesProjected, other.backfaceCulled, other.decimated, other.filterCulled);
+        countPolygons(other.mergedPolygons);
+        actorsSkipped += other.actorsSkipped;
+        actorsCoarse += other.actorsCoarse;
+        actorsBeyondDetail += other.actorsBeyondDetail;
+    }
+
+    public void reset() {
+        merger.reset();
+        trianglesProjected = 0;
+        backfaceCulled = 0;
+        decimated = 0;
+        filterCulled = 0;
+        mergedPolygons = 0;
+        actorsSkipped = 0;
+        actorsCoarse = 0;
+        actorsBeyondDetail = 0;
+    }
+}
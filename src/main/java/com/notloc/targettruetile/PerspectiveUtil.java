@@ -26,81 +26,88 @@ package com.notloc.targettruetile;
 
 import net.runelite.api.Client;
 import net.runelite.api.Perspective;
-import net.runelite.api.Point;
-import net.runelite.api.Scene;
 import net.runelite.api.coords.LocalPoint;
 
 import javax.annotation.Nonnull;
 import java.awt.*;
 
+// Tile projection reads heights from a TileHeightCache, which the caller keeps up to date for the current scene
 public class PerspectiveUtil {
+    // Points projected per tile: the four corners, then the east and north tips of the southwest mark
+    private static final int SW = 0;
+    private static final int SE = 1;
+    private static final int NE = 2;
+    private static final int NW = 3;
+    private static final int MARK_EAST = 4;
+    private static final int MARK_NORTH = 5;
 
-    public static Polygon getCanvasTileMarkPoly(@Nonnull Client client, @Nonnull LocalPoint localLocation, int size, int length_128) {
-        return getCanvasTileMarkPoly(client, localLocation, size, size, length_128, client.getTopLevelWorldView().getPlane(), 0);
+    public static void projectTile(@Nonnull Client client, @Nonnull TileHeightCache heights, @Nonnull LocalPoint localLocation, int size, int length_128, @Nonnull TileGeometry out) {
+        projectTile(client, heights, localLocation, size, size, length_128, client.getTopLevelWorldView().getPlane(), 0, out);
     }
 
-    // Adapted from runelite-api Perspective.java
-    // Creates a triangle on the ground instead of a square
-    public static Polygon getCanvasTileMarkPoly(@Nonnull Client client, @Nonnull LocalPoint localLocation, int sizeX, int sizeY, int length_128, int plane, int zOffset) {
-        int msx = localLocation.getSceneX() + 40;
-        int msy = localLocation.getSceneY() + 40;
-        if (msx >= 0 && msy >= 0 && msx < 184 && msy < 184) {
-            Scene scene = client.getTopLevelWorldView().getScene();
-            byte[][][] tileSettings = scene.getExtendedTileSettings();
-            int tilePlane = plane;
-            if (plane < 3 && (tileSettings[1][msx][msy] & 2) == 2) {
-                tilePlane = plane + 1;
-            }
+    // Adapted from runelite-api Perspective.java getCanvasTileAreaPoly
+    // Reads the corner heights once and projects the corners and the southwest mark in a single pass,
+    // the tile outline and the mark triangle are then built from the same points.
+    // The mark is only made when length_128 is not negative, each polygon is null if one of its points is off screen.
+    public static void projectTile(@Nonnull Client client, @Nonnull TileHeightCache heights, @Nonnull LocalPoint localLocation, int sizeX, int sizeY, int length_128, int plane, int zOffset, @Nonnull TileGeometry out) {
+        out.tilePoly = null;
+        out.markPoly = null;
+        if (!heights.contains(localLocation.getX(), localLocation.getY())) {
+            return;
+        }
+        int tilePlane = heights.getTilePlane(localLocation.getX(), localLocation.getY(), plane);
+
+        int swX = localLocation.getX() - sizeX * 128 / 2;
+        int swY = localLocation.getY() - sizeY * 128 / 2;
+        int neX = localLocation.getX() + sizeX * 128 / 2;
+        int neY = localLocation.getY() + sizeY * 128 / 2;
+        int swHeight = heights.getHeight(swX, swY, tilePlane) - zOffset;
+        int seHeight = heights.getHeight(neX, swY, tilePlane) - zOffset;
+        int neHeight = heights.getHeight(neX, neY, tilePlane) - zOffset;
+        int nwHeight = heights.getHeight(swX, neY, tilePlane) - zOffset;
 
-            int swX = localLocation.getX() - sizeX * 128 / 2;
-            int swY = localLocation.getY() - sizeY * 128 / 2;
-            int neX = localLocation.getX() + sizeX * 128 / 2;
-            int neY = localLocation.getY() + sizeY * 128 / 2;
-            int swHeight = getHeight(scene, swX, swY, tilePlane) - zOffset;
-            int nwHeight = getHeight(scene, neX, swY, tilePlane) - zOffset;
-            int seHeight = getHeight(scene, swX, neY, tilePlane) - zOffset;
+        setPoint(out, SW, swX, swY, swHeight);
+        setPoint(out, SE, neX, swY, seHeight);
+        setPoint(out, NE, neX, neY, neHeight);
+        setPoint(out, NW, swX, neY, nwHeight);
 
-            int eX = swX + length_128;
-            int nY = swY + length_128;
+        // The mark's tips sit along the south and west edges, their heights interpolated along the edge
+        boolean mark = length_128 >= 0;
+        int points = 4;
+        if (mark) {
+            setPoint(out, MARK_EAST, swX + length_128, swY, lerp128(swHeight, seHeight, length_128 / sizeX));
+            setPoint(out, MARK_NORTH, swX, swY + length_128, lerp128(swHeight, nwHeight, length_128 / sizeY));
+            points = 6;
+        }
 
-            int exHeight = lerpInt128(swHeight, seHeight, length_128/sizeX);
-            int nYHeight = lerpInt128(swHeight, nwHeight, length_128/sizeY);
+        Perspective.modelToCanvas(client, points, 0, 0, 0, 0, out.x, out.y, out.z, out.x2d, out.y2d);
 
-            net.runelite.api.Point p1 = Perspective.localToCanvas(client, swX, swY, swHeight);
-            net.runelite.api.Point p2 = Perspective.localToCanvas(client, eX, swY, nYHeight);
-            Point p3 = Perspective.localToCanvas(client, swX, nY, exHeight);
-            if (p1 != null && p2 != null && p3 != null) {
-                Polygon poly = new Polygon();
-                poly.addPoint(p1.getX(), p1.getY());
-                poly.addPoint(p2.getX(), p2.getY());
-                poly.addPoint(p3.getX(), p3.getY());
-                return poly;
-            } else {
-                return null;
-            }
-        } else {
-            return null;
+        if (isProjected(out, SW) && isProjected(out, SE) && isProjected(out, NE) && isProjected(out, NW)) {
+            out.tilePoly = new Polygon(
+                    new int[]{out.x2d[SW], out.x2d[SE], out.x2d[NE], out.x2d[NW]},
+                    new int[]{out.y2d[SW], out.y2d[SE], out.y2d[NE], out.y2d[NW]},
+                    4);
+        }
+        if (mark && isProjected(out, SW) && isProjected(out, MARK_EAST) && isProjected(out, MARK_NORTH)) {
+            out.markPoly = new Polygon(
+                    new int[]{out.x2d[SW], out.x2d[MARK_EAST], out.x2d[MARK_NORTH]},
+                    new int[]{out.y2d[SW], out.y2d[MARK_EAST], out.y2d[MARK_NORTH]},
+                    3);
         }
     }
 
-    // Copied from runelite-api Perspective.java
-    private static int getHeight(@Nonnull Scene scene, int localX, int localY, int plane) {
-        int sceneX = (localX >> 7) + 40;
-        int sceneY = (localY >> 7) + 40;
-        if (sceneX >= 0 && sceneY >= 0 && sceneX < 184 && sceneY < 184) {
-            int[][][] tileHeights = scene.getTileHeights();
-            int x = localX & 127;
-            int y = localY & 127;
-            int var8 = x * tileHeights[plane][sceneX + 1][sceneY] + (128 - x) * tileHeights[plane][sceneX][sceneY] >> 7;
-            int var9 = tileHeights[plane][sceneX][sceneY + 1] * (128 - x) + x * tileHeights[plane][sceneX + 1][sceneY + 1] >> 7;
-            return (128 - y) * var8 + y * var9 >> 7;
-        } else {
-            return 0;
-        }
+    private static void setPoint(TileGeometry out, int i, int x, int y, int z) {
+        out.x[i] = x;
+        out.y[i] = y;
+        out.z[i] = z;
+    }
+
+    // Points behind the camera come back as Integer.MIN_VALUE
+    private static boolean isProjected(TileGeometry out, int i) {
+        return out.x2d[i] != Integer.MIN_VALUE;
     }
 
-    private static int lerpInt128(int a, int b, int t_128) {
-        float t = t_128 / 128f;
-        return a + (int)((b-a)*t);
+    private static int lerp128(int a, int b, int t_128) {
+        return a + (b - a) * t_128 / 128;
     }
 }
@@ -0,0 +1,51 @@
+package com.notloc.targettruetile;
+
+import java.awt.*;
+
+// Snapshot of the config values used while drawing tiles.
+// Config getters go through a reflective proxy, so this is rebuilt on config changes and read directly each frame.
+class RenderStyle {
+    final Color borderColor;
+    final Color fillColor;
+    final Stroke borderStroke;
+    final BorderStyle borderStyle;
+    final float borderLength;
+
+    final boolean showCorner;
+    final boolean showCornerOnlyLarge;
+    final Color cornerColor;
+    final int cornerLength;
+
+    final boolean highlightOnHover;
+    final boolean improvedTileRendering;
+    final OcclusionMode occlusionMode;
+    final int lodFullArea;
+    final int lodSkipArea;
+    final int frameBudget;
+    final boolean showDebugStats;
+
+    private RenderStyle(TargetTrueTileConfig config) {
+        borderColor = config.tileColor();
+        fillColor = config.tileFillColor();
+        borderStroke = new BasicStroke(config.borderSize());
+        borderStyle = config.borderStyle();
+        borderLength = config.borderLength() / 100.0f;
+
+        showCorner = config.showCorner();
+        showCornerOnlyLarge = config.showCornerOnlyLarge();
+        cornerColor = config.tileCornerColor();
+        cornerLength = config.tileCornerLength();
+
+        highlightOnHover = config.highlightOnHover();
+        improvedTileRendering = config.improvedTileRendering();
+        occlusionMode = config.occlusionMode();
+        lodFullArea = config.lodFullArea();
+        lodSkipArea = config.lodSkipArea();
+        frameBudget = config.frameBudget();
+        showDebugStats = config.showDebugStats();
+    }
+
+    static RenderStyle fromConfig(TargetTrueTileConfig config) {
+        return new RenderStyle(config);
+    }
+}
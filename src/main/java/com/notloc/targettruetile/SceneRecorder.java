@@ -0,0 +1,454 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Actor;
+import net.runelite.api.Client;
+import net.runelite.api.Model;
+import net.runelite.api.Scene;
+import net.runelite.api.WorldView;
+import net.runelite.api.coords.LocalPoint;
+import net.runelite.api.coords.WorldPoint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Binary log of everything the overlay draws from: the scene's tile heights, the camera and each highlighted actor
+// with its model, so a real encounter can be replayed offline through the overlay.
+// Fields are fixed width and big endian. Every record is a type byte and a payload length followed by the payload,
+// so a reader can map the file and step over records it doesn't need.
+// Models are written in full once, actors refer to them by id. Animated models are rewritten in place by the client,
+// each new shape is written as the vertices that moved since the model's previous shape.
+// Records are built on the client thread and handed to a writer thread, so the file is never touched while rendering.
+class SceneRecorder implements Closeable {
+    static final int MAGIC = 0x54545443; // TTTC
+    static final int VERSION = 3;
+
+    static final byte RECORD_SCENE = 1;
+    static final byte RECORD_MODEL = 2;
+    static final byte RECORD_TICK = 3;
+    static final byte RECORD_FRAME = 4;
+    static final byte RECORD_MODEL_DELTA = 5;
+
+    // Why an actor is in a frame
+    static final int FLAG_PLAYER = 1;
+    static final int FLAG_TARGET = 1 << 1;
+    static final int FLAG_REMEMBERED = 1 << 2;
+    static final int FLAG_TAGGED = 1 << 3;
+    static final int FLAG_HOVERED = 1 << 4;
+    static final int FLAG_ATTACKABLE = 1 << 5;
+
+    static final int NO_MODEL = -1;
+
+    // Models not seen for this many frames are forgotten, and all of them once this many are tracked.
+    // A forgotten model that shows up again is written in full under a new id.
+    private static final int EVICT_INTERVAL = 128; // frames
+    private static final int MAX_MODELS = 1024;
+
+    // Recording fails rather than buffering without end if the disk can't keep up
+    private static final long MAX_PENDING_BYTES = 64 << 20;
+    // Larger buffers, like those of scene records, are left to the garbage collector instead of being reused
+    private static final int MAX_REUSED_CAPACITY = 1 << 16;
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    private final FileChannel channel;
+    private final Thread writer;
+    private final BlockingQueue<ByteBuffer> pending = new LinkedBlockingQueue<>();
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private volatile IOException failure;
+
+    private final Record record = new Record();
+    private final Record frame = new Record();
+
+    private final Map<Model, ModelState> models = new IdentityHashMap<>();
+    private int nextModelId;
+    private int frameCount;
+
+    private Scene scene;
+    private int sceneBaseX, sceneBaseY, scenePlane;
+    private int frameActorsAt;
+    private int frameActors;
+
+    // The last shape written for a model object
+    private static final class ModelState {
+        int id;
+        int fingerprint;
+        int faceFingerprint;
+        int lastUsedFrame;
+        float[] x, y, z;
+    }
+
+    SceneRecorder(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        writer = new Thread(this::drain, "scene-capture-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        submit(header);
+    }
+
+    // The scene was reloaded, the next frame writes it again even if the scene object is reused
+    public void invalidateScene() {
+        scene = null;
+    }
+
+    public void tick(int tickCount) throws IOException {
+        record.begin(RECORD_TICK).reserve(4).putInt(tickCount);
+        record.end();
+        write(record);
+    }
+
+    public void beginFrame(Client client, WorldView worldView) throws IOException {
+        frameCount++;
+        if (frameCount % EVICT_INTERVAL == 0) {
+            models.values().removeIf(state -> frameCount - state.lastUsedFrame > EVICT_INTERVAL);
+        }
+
+        Scene scene = worldView.getScene();
+        if (scene != this.scene || worldView.getBaseX() != sceneBaseX || worldView.getBaseY() != sceneBaseY || worldView.getPlane() != scenePlane) {
+            writeScene(worldView, scene);
+        }
+
+        ByteBuffer buffer = frame.begin(RECORD_FRAME).reserve(96);
+        buffer.putInt(client.getTickCount());
+        buffer.putDouble(client.getCameraFpX());
+        buffer.putDouble(client.getCameraFpY());
+        buffer.putDouble(client.getCameraFpZ());
+        buffer.putDouble(client.getCameraFpPitch());
+        buffer.putDouble(client.getCameraFpYaw());
+        buffer.putInt(client.getCameraX());
+        buffer.putInt(client.getCameraY());
+        buffer.putInt(client.getCameraZ());
+        buffer.putInt(client.getCameraPitch());
+        buffer.putInt(client.getCameraYaw());
+        buffer.putInt(client.getScale());
+        buffer.putInt(client.getViewportXOffset());
+        buffer.putInt(client.getViewportYOffset());
+        buffer.putInt(client.getViewportWidth());
+        buffer.putInt(client.getViewportHeight());
+        buffer.put((byte) (client.isGpu() ? 1 : 0));
+
+        frameActorsAt = buffer.position();
+        frameActors = 0;
+        buffer.putInt(0);
+    }
+
+    // The model is written ahead of the frame the first time it is seen
+    public void addActor(Actor actor, int index, int flags, int size, int footprintSize) throws IOException {
+        int modelId = modelId(actor.getModel());
+        WorldPoint world = actor.getWorldLocation();
+        LocalPoint local = actor.getLocalLocation();
+
+        ByteBuffer buffer = frame.reserve(60);
+        buffer.putInt(index);
+        buffer.putInt(flags);
+        buffer.putInt(world != null ? world.getX() : 0);
+        buffer.putInt(world != null ? world.getY() : 0);
+        buffer.putInt(world != null ? world.getPlane() : 0);
+        buffer.putInt(local != null ? local.getX() : 0);
+        buffer.putInt(local != null ? local.getY() : 0);
+        buffer.putInt(size);
+        buffer.putInt(footprintSize);
+        buffer.putInt(actor.getCurrentOrientation());
+        buffer.putInt(actor.getAnimationFrame());
+        buffer.putInt(actor.getPoseAnimationFrame());
+        buffer.putInt(actor.getAnimationHeightOffset());
+        buffer.putInt(modelId);
+        buffer.put((byte) (local != null ? 1 : 0));
+        frameActors++;
+    }
+
+    public void endFrame() throws IOException {
+        frame.buffer.putInt(frameActorsAt, frameActors);
+        frame.end();
+        write(frame);
+    }
+
+    // Waits for the writer to finish what was recorded so far
+    @Override
+    public void close() throws IOException {
+        models.clear();
+        pending.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while finishing the scene capture");
+        } finally {
+            channel.close();
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void writeScene(WorldView worldView, Scene scene) throws IOException {
+        this.scene = scene;
+        this.sceneBaseX = worldView.getBaseX();
+        this.sceneBaseY = worldView.getBaseY();
+        this.scenePlane = worldView.getPlane();
+
+        // Ids keep counting up, dropping the models of the old scene only saves memory here
+        models.clear();
+
+        ByteBuffer buffer = record.begin(RECORD_SCENE).reserve(20);
+        buffer.putInt(sceneBaseX);
+        buffer.putInt(sceneBaseY);
+        buffer.putInt(scenePlane);
+        buffer.putInt(worldView.getSizeX());
+        buffer.putInt(worldView.getSizeY());
+
+        int[][][] heights = scene != null ? scene.getTileHeights() : null;
+        buffer = record.reserve(4).putInt(heights != null ? heights.length : 0);
+        for (int p = 0; heights != null && p < heights.length; p++) {
+            int rows = heights[p].length;
+            int columns = rows > 0 ? heights[p][0].length : 0;
+            buffer = record.reserve(8 + rows * columns * 4).putInt(rows).putInt(columns);
+            for (int[] row : heights[p]) {
+                for (int height : row) {
+                    buffer.putInt(height);
+                }
+            }
+        }
+
+        // Bridge flags decide which plane a tile's heights are read from
+        byte[][][] settings = scene != null ? scene.getExtendedTileSettings() : null;
+        buffer = record.reserve(4).putInt(settings != null ? settings.length : 0);
+        for (int p = 0; settings != null && p < settings.length; p++) {
+            int rows = settings[p].length;
+            int columns = rows > 0 ? settings[p][0].length : 0;
+            buffer = record.reserve(8 + rows * columns).putInt(rows).putInt(columns);
+            for (byte[] row : settings[p]) {
+                buffer.put(row);
+            }
+        }
+
+        record.end();
+        write(record);
+    }
+
+    private int modelId(Model model) throws IOException {
+        if (model == null) {
+            return NO_MODEL;
+        }
+
+        // Models can be buffers rewritten in place, a changed shape gets a new id
+        int fingerprint = fingerprint(model);
+        ModelState state = models.get(model);
+        if (state != null && state.fingerprint == fingerprint) {
+            state.lastUsedFrame = frameCount;
+            return state.id;
+        }
+
+        // Animation only moves vertices, the faces stay as they were
+        int vertexCount = model.getVerticesCount();
+        int faceFingerprint = faceFingerprint(model);
+        if (state != null && vertexCount == state.x.length && faceFingerprint == state.faceFingerprint) {
+            int baseId = state.id;
+            state.id = nextModelId++;
+            state.fingerprint = fingerprint;
+            state.lastUsedFrame = frameCount;
+            writeModelDelta(state, baseId, model);
+            return state.id;
+        }
+
+        if (state == null) {
+            if (models.size() >= MAX_MODELS) {
+                models.clear();
+            }
+            state = new ModelState();
+            models.put(model, state);
+        }
+
+        state.id = nextModelId++;
+        state.fingerprint = fingerprint;
+        state.faceFingerprint = faceFingerprint;
+        state.lastUsedFrame = frameCount;
+        state.x = Arrays.copyOf(model.getVerticesX(), vertexCount);
+        state.y = Arrays.copyOf(model.getVerticesY(), vertexCount);
+        state.z = Arrays.copyOf(model.getVerticesZ(), vertexCount);
+        writeModel(state.id, model);
+        return state.id;
+    }
+
+    // Every vertex is hashed, the recording has to catch any change of shape
+    private static int fingerprint(Model model) {
+        int vCount = model.getVerticesCount();
+        float[] x = model.getVerticesX();
+        float[] y = model.getVerticesY();
+        float[] z = model.getVerticesZ();
+
+        int hash = vCount * 31 + model.getFaceCount();
+        for (int i = 0; i < vCount; i++) {
+            hash = hash * 31 + Float.floatToIntBits(x[i]);
+            hash = hash * 31 + Float.floatToIntBits(y[i]);
+            hash = hash * 31 + Float.floatToIntBits(z[i]);
+        }
+        return hash;
+    }
+
+    private static int faceFingerprint(Model model) {
+        int faceCount = model.getFaceCount();
+        int[] faces1 = model.getFaceIndices1();
+        int[] faces2 = model.getFaceIndices2();
+        int[] faces3 = model.getFaceIndices3();
+        byte[] transparencies = model.getFaceTransparencies();
+
+        int hash = faceCount;
+        for (int i = 0; i < faceCount; i++) {
+            hash = hash * 31 + faces1[i];
+            hash = hash * 31 + faces2[i];
+            hash = hash * 31 + faces3[i];
+            hash = hash * 31 + (transparencies != null ? transparencies[i] : -1);
+        }
+        return hash;
+    }
+
+    // Writes the vertices that moved since the model's last shape, the new shape takes the rest from the base
+    private void writeModelDelta(ModelState state, int baseId, Model model) throws IOException {
+        int vertexCount = state.x.length;
+        float[] x = model.getVerticesX();
+        float[] y = model.getVerticesY();
+        float[] z = model.getVerticesZ();
+
+        ByteBuffer buffer = record.begin(RECORD_MODEL_DELTA).reserve(12 + vertexCount * 16);
+        buffer.putInt(state.id);
+        buffer.putInt(baseId);
+        int countAt = buffer.position();
+        buffer.putInt(0);
+
+        int changed = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            if (x[i] != state.x[i] || y[i] != state.y[i] || z[i] != state.z[i]) {
+                buffer.putInt(i).putFloat(x[i]).putFloat(y[i]).putFloat(z[i]);
+                state.x[i] = x[i];
+                state.y[i] = y[i];
+                state.z[i] = z[i];
+                changed++;
+            }
+        }
+        buffer.putInt(countAt, changed);
+
+        record.end();
+        write(record);
+    }
+
+    private void writeModel(int id, Model model) throws IOException {
+        int vertexCount = model.getVerticesCount();
+        int faceCount = model.getFaceCount();
+        float[] x = model.getVerticesX();
+        float[] y = model.getVerticesY();
+        float[] z = model.getVerticesZ();
+        int[] faces1 = model.getFaceIndices1();
+        int[] faces2 = model.getFaceIndices2();
+        int[] faces3 = model.getFaceIndices3();
+        byte[] transparencies = model.getFaceTransparencies();
+
+        ByteBuffer buffer = record.begin(RECORD_MODEL).reserve(13 + vertexCount * 12 + faceCount * 13);
+        buffer.putInt(id);
+        buffer.putInt(vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            buffer.putFloat(x[i]).putFloat(y[i]).putFloat(z[i]);
+        }
+        buffer.putInt(faceCount);
+        for (int i = 0; i < faceCount; i++) {
+            buffer.putInt(faces1[i]).putInt(faces2[i]).putInt(faces3[i]);
+        }
+        buffer.put((byte) (transparencies != null ? 1 : 0));
+        if (transparencies != null) {
+            buffer.put(transparencies, 0, faceCount);
+        }
+
+        record.end();
+        write(record);
+    }
+
+    // Hands the finished record to the writer, the record carries on with a fresh buffer
+    private void write(Record record) throws IOException {
+        submit(record.detach(free.poll()));
+    }
+
+    private void submit(ByteBuffer buffer) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (pendingBytes.addAndGet(buffer.remaining()) > MAX_PENDING_BYTES) {
+            throw new IOException("Scene capture can't be written as fast as it is recorded");
+        }
+        pending.add(buffer);
+    }
+
+    // Runs on the writer thread until closed or a write fails, the failure is reported on the next record
+    private void drain() {
+        try {
+            while (true) {
+                ByteBuffer buffer = pending.take();
+                if (buffer == CLOSE) {
+                    return;
+                }
+
+                int bytes = buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                pendingBytes.addAndGet(-bytes);
+                if (buffer.capacity() <= MAX_REUSED_CAPACITY) {
+                    free.add(buffer);
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A record being built, its length is filled in once the payload is complete
+    private static final class Record {
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+
+        Record begin(byte type) {
+            buffer.clear();
+            buffer.put(type).putInt(0);
+            return this;
+        }
+
+        // Grows the buffer to fit the given bytes, keeping what was written so far
+        ByteBuffer reserve(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            return buffer;
+        }
+
+        void end() {
+            buffer.putInt(1, buffer.position() - 5);
+            buffer.flip();
+        }
+
+        // Gives up the finished buffer, continuing with the replacement or a new buffer
+        ByteBuffer detach(ByteBuffer replacement) {
+            ByteBuffer finished = buffer;
+            buffer = replacement != null ? replacement : ByteBuffer.allocate(1 << 12);
+            return finished;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.notloc.targettruetile;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+// The NPC Indicators name list compiled into lookup structures, matching the same names as WildcardMatcher.
+// Plain names and single-sided wildcards become hash lookups, anything else is folded into one combined pattern.
+// Results are remembered per name, a new matcher is compiled whenever the list changes.
+class TagMatcher {
+    static final TagMatcher EMPTY = new TagMatcher(Collections.emptyList());
+
+    private final Set<String> exact = new HashSet<>();
+    private final Set<String> prefixes = new HashSet<>();
+    private final Set<String> suffixes = new HashSet<>();
+    private final Pattern complex;
+    private final boolean matchAll;
+
+    private final Map<String, Boolean> results = new HashMap<>();
+
+    TagMatcher(Collection<String> patterns) {
+        StringBuilder regex = new StringBuilder();
+        boolean matchAll = false;
+
+        for (String pattern : patterns) {
+            String lower = lowerAscii(pattern);
+            int first = lower.indexOf('*');
+            int last = lower.lastIndexOf('*');
+
+            if (first == -1) {
+                exact.add(lower);
+            } else if (lower.chars().allMatch(c -> c == '*')) {
+                matchAll = true;
+            } else if (first == last && last == lower.length() - 1) {
+                prefixes.add(lower.substring(0, last));
+            } else if (first == last && first == 0) {
+                suffixes.add(lower.substring(1));
+            } else {
+                if (regex.length() > 0) {
+                    regex.append('|');
+                }
+                appendWildcard(regex, pattern);
+            }
+        }
+
+        this.matchAll = matchAll;
+        this.complex = regex.length() > 0 ? Pattern.compile("(?:" + regex + ")", Pattern.CASE_INSENSITIVE) : null;
+    }
+
+    public boolean matches(String name) {
+        Boolean result = results.get(name);
+        if (result == null) {
+            result = evaluate(name);
+            results.put(name, result);
+        }
+        return result;
+    }
+
+    private boolean evaluate(String name) {
+        if (matchAll) {
+            return true;
+        }
+
+        String lower = lowerAscii(name);
+        if (exact.contains(lower)) {
+            return true;
+        }
+
+        if (!prefixes.isEmpty() || !suffixes.isEmpty()) {
+            for (int i = 0; i <= lower.length(); i++) {
+                if (prefixes.contains(lower.substring(0, i)) || suffixes.contains(lower.substring(i))) {
+                    return true;
+                }
+            }
+        }
+
+        return complex != null && complex.matcher(name).matches();
+    }
+
+    // WildcardMatcher only folds the case of ASCII letters, so accented letters and the Turkish dotted and dotless i must keep their case here as well
+    private static String lowerAscii(String s) {
+        char[] chars = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (chars == null) {
+                    chars = s.toCharArray();
+                }
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return chars == null ? s : new String(chars);
+    }
+
+    // Same translation as WildcardMatcher, literal runs are quoted and each * matches anything
+    private static void appendWildcard(StringBuilder regex, String pattern) {
+        int start = 0;
+        for (int i = 0; i <= pattern.length(); i++) {
+            if (i == pattern.length() || pattern.charAt(i) == '*') {
+                if (i > start) {
+                    regex.append(Pattern.quote(pattern.substring(start, i)));
+                }
+                if (i < pattern.length()) {
+                    regex.append(".*");
+                }
+                start = i + 1;
+            }
+        }
+    }
+}
@@ -8,15 +8,19 @@ public class Target {
     @Getter
     private final NPC npc;
 
+    // Game tick
     @Getter @Setter
-    private long lastTargetedAt;
+    private int expiresAt;
 
-    public Target(NPC npc, long lastTargetedAt) {
+    // The tick this target is queued for in TargetMemory, can fall behind expiresAt until the queue catches up
+    @Getter @Setter
+    private int scheduledAt;
+
+    public Target(NPC npc) {
         this.npc = npc;
-        this.lastTargetedAt = lastTargetedAt;
     }
 
-    public boolean isVisible() {
+    public static boolean isVisible(NPC npc) {
         return npc.getComposition() != null && !npc.isDead();
     }
 }
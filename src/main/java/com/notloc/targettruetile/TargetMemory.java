@@ -5,58 +5,103 @@ import net.runelite.api.NPC;
 
 import java.util.*;
 
+// Timestamps are game ticks.
+// Each target sits in the expiry queue once, under the deadline it had when queued. Refreshing a target only moves
+// its deadline, when the old one comes up it is requeued instead of expired. Expiry therefore only touches targets
+// whose deadline has come up, the remembered set is still swept every tick for NPCs that turned invisible.
+// Targets are stored by NPC index, alongside the set of remembered NPCs the overlay iterates.
 public class TargetMemory {
 
+    private Target[] targets = new Target[256];
+    private final PriorityQueue<Target> expiryQueue = new PriorityQueue<>(Comparator.comparingInt(Target::getScheduledAt));
+
     @Getter
-    private final Set<NPC> npcs = new HashSet<>();
-    private final Map<NPC, Target> targets = new HashMap<>();
+    private final NpcIndexSet npcs = new NpcIndexSet();
 
-    public void acknowledgeTarget(NPC npc) {
-        Target target = targets.get(npc);
+    public void acknowledgeTarget(NPC npc, int tick, int timeoutTicks) {
+        if (!Target.isVisible(npc)) {
+            remove(npc);
+            return;
+        }
+
+        Target target = get(npc);
         if (target == null) {
-            target = add(npc);
+            add(npc, tick + timeoutTicks);
+            return;
         }
-        target.setLastTargetedAt(now());
+        target.setExpiresAt(tick + timeoutTicks);
     }
 
     public void forgetTarget(NPC npc) {
         remove(npc);
     }
 
-    public void forgetOldTargets(int threshold_s) {
-        long now = now();
-        List<NPC> npcsToForget = new ArrayList<>();
+    public void forgetOldTargets(int tick) {
+        Target target;
+        while ((target = expiryQueue.peek()) != null && target.getScheduledAt() <= tick) {
+            expiryQueue.poll();
+            if (get(target.getNpc()) != target) {
+                // Forgotten since it was queued
+                continue;
+            }
 
-        for (Target target : targets.values()) {
-            long delta = now - target.getLastTargetedAt();
-            if (delta >= threshold_s || !target.isVisible()) {
-                npcsToForget.add(target.getNpc());
+            if (target.getExpiresAt() <= tick) {
+                remove(target.getNpc());
+            } else {
+                target.setScheduledAt(target.getExpiresAt());
+                expiryQueue.add(target);
             }
         }
 
-        for (NPC npc : npcsToForget) {
-            remove(npc);
+        // An NPC that transforms into nothing is dropped right away, not when its deadline comes up
+        for (int i = npcs.nextIndex(0); i >= 0; i = npcs.nextIndex(i + 1)) {
+            NPC npc = npcs.get(i);
+            if (!Target.isVisible(npc)) {
+                remove(npc);
+            }
+        }
+    }
+
+    public void forgetAllExcept(NPC npc) {
+        for (int i = npcs.nextIndex(0); i >= 0; i = npcs.nextIndex(i + 1)) {
+            if (npcs.get(i) != npc) {
+                targets[i] = null;
+            }
         }
+        npcs.removeIf(other -> other != npc);
     }
 
     public void forgetAll() {
+        Arrays.fill(targets, null);
         npcs.clear();
-        targets.clear();
+        expiryQueue.clear();
     }
 
-    private Target add(NPC npc) {
-        Target target = new Target(npc, now());
-        targets.put(npc, target);
-        npcs.add(npc);
-        return target;
+    private Target get(NPC npc) {
+        int index = npc.getIndex();
+        Target target = index < targets.length ? targets[index] : null;
+        return target != null && target.getNpc() == npc ? target : null;
     }
 
-    private void remove(NPC npc) {
-        targets.remove(npc);
-        npcs.remove(npc);
+    private void add(NPC npc, int expiresAt) {
+        Target target = new Target(npc);
+        target.setExpiresAt(expiresAt);
+        target.setScheduledAt(expiresAt);
+
+        int index = npc.getIndex();
+        if (index >= targets.length) {
+            targets = Arrays.copyOf(targets, Math.max(index + 1, targets.length * 2));
+        }
+        // Replaces any NPC that had this index before
+        targets[index] = target;
+        npcs.add(npc);
+        expiryQueue.add(target);
     }
 
-    private static long now() {
-        return java.time.Instant.now().getEpochSecond();
+    private void remove(NPC npc) {
+        if (get(npc) != null) {
+            targets[npc.getIndex()] = null;
+            npcs.remove(npc);
+        }
     }
 }
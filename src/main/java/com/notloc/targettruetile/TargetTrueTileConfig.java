@@ -30,6 +30,14 @@ public interface TargetTrueTileConfig extends Config
 	)
 	String corner = "corner";
 
+	@ConfigSection(
+			name = "Debug",
+			description = "Diagnostic options",
+			position = 4,
+			closedByDefault = true
+	)
+	String debug = "debug";
+
 
 	@ConfigItem(
 			keyName = "targettimeout",
@@ -85,6 +93,42 @@ public interface TargetTrueTileConfig extends Config
 	)
 	default boolean improvedTileRendering() { return true; }
 
+	@ConfigItem(
+			keyName = "occlusionmode",
+			name = "Occlusion Method",
+			description = "How tiles are cleared beneath actors. Polygon tests each triangle against the tiles, Clip leaves that to a clip region, Mask draws every actor into one mask cleared at once and Hull clears each actor's outline, fastest but loose around limbs.",
+			position = 6,
+			section = options
+	)
+	default OcclusionMode occlusionMode() { return OcclusionMode.POLYGON; }
+
+	@ConfigItem(
+			keyName = "lodfullarea",
+			name = "Full Occlusion Tile Size",
+			description = "NPCs whose tile covers at least this many screen pixels clear with their exact model, smaller ones clear with a model snapped to a coarser pixel grid. 0 turns level of detail off.",
+			position = 7,
+			section = options
+	)
+	default int lodFullArea() { return 0; }
+
+	@ConfigItem(
+			keyName = "lodskiparea",
+			name = "Skip Occlusion Tile Size",
+			description = "NPCs whose tile covers fewer screen pixels than this are not cleared at all. 0 clears every NPC. Only used when level of detail is on.",
+			position = 8,
+			section = options
+	)
+	default int lodSkipArea() { return 64; }
+
+	@ConfigItem(
+			keyName = "framebudget",
+			name = "Frame Budget",
+			description = "Microseconds per frame the plugin may spend drawing, 0 never cuts back. Past it, lower priority NPCs are drawn without clearing beneath actors, and reuse their last tile while the camera barely moves. Targets come first, then hovered and tagged NPCs.",
+			position = 9,
+			section = options
+	)
+	default int frameBudget() { return 0; }
+
 	@Alpha
 	@ConfigItem(
 			keyName = "tilecolor",
@@ -178,4 +222,22 @@ public interface TargetTrueTileConfig extends Config
 			section = corner
 	)
 	default int tileCornerLength() { return 32; }
+
+	@ConfigItem(
+			keyName = "debugstats",
+			name = "Show Performance Stats",
+			description = "Show rolling render timings and occlusion counts for this plugin.",
+			position = 1,
+			section = debug
+	)
+	default boolean showDebugStats() { return false; }
+
+	@ConfigItem(
+			keyName = "capturescene",
+			name = "Record Scene Capture",
+			description = "Record highlighted NPCs, their models and the camera to .runelite/target-true-tile for offline replay. Files grow quickly, leave off during normal play.",
+			position = 2,
+			section = debug
+	)
+	default boolean captureScene() { return false; }
 }
@@ -14,23 +14,34 @@ import net.runelite.api.coords.WorldPoint;
 import net.runelite.client.ui.overlay.*;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Set;
+import java.util.Arrays;
 import java.util.List;
 
 class TargetTrueTileOverlay extends Overlay {
     private final Client client;
     private final TargetTrueTilePlugin plugin;
-    private final TargetTrueTileConfig config;
 
-    private final List<NPC> renderList = new ArrayList<>();
+    // NPCs drawn this frame, so each is drawn and occluded once however many reasons it has to be drawn
+    private final NpcIndexSet rendered = new NpcIndexSet();
+    // The same NPCs in the order they were drawn, which is their priority for the frame budget
+    private NPC[] renderOrder = new NPC[64];
+    private int renderCount;
+    // Screen area of each rendered NPC's tile by NPC index, -1 when the tile couldn't be projected
+    private int[] tileAreas = new int[256];
     private final List<Polygon> renderPolyList = new ArrayList<>();
+    private final CameraState cameraState = new CameraState();
+    private final TileCache tileCache = new TileCache();
+    private final TileHeightCache tileHeights = new TileHeightCache();
+    private final TileGeometry tileGeometry = new TileGeometry();
+    private final TileBatch tileBatch = new TileBatch();
+    private final FilterIndex filterIndex = new FilterIndex();
+    private final OcclusionPass occlusionPass = new OcclusionPass();
+    private final FrameBudget budget = new FrameBudget();
 
     @Inject
-    private TargetTrueTileOverlay(Client client, TargetTrueTilePlugin plugin, TargetTrueTileConfig config) {
+    private TargetTrueTileOverlay(Client client, TargetTrueTilePlugin plugin) {
         this.client = client;
         this.plugin = plugin;
-        this.config = config;
         setPosition(OverlayPosition.DYNAMIC);
         setLayer(OverlayLayer.ABOVE_SCENE);
         setPriority(0.6f);
@@ -38,59 +49,151 @@ class TargetTrueTileOverlay extends Overlay {
 
     @Override
     public Dimension render(Graphics2D graphics) {
-        Set<NPC> npcs = plugin.getTargetMemory().getNpcs();
-        renderPolyList.addAll(renderTrueTiles(graphics, npcs));
-        renderList.addAll(npcs);
-
-        if (config.highlightOnHover()) {
-            NPC mousedNpc = plugin.findNpcUnderMouse();
-            if (mousedNpc != null && !npcs.contains(mousedNpc)) {
-                Polygon p = renderTrueTile(graphics, mousedNpc);
-                if (p != null) {
-                    renderList.add(mousedNpc);
-                    renderPolyList.add(p);
-                }
+        RenderStyle style = plugin.getRenderStyle();
+        FrameStats stats = style.showDebugStats ? plugin.getFrameStats() : null;
+        long start = stats != null ? System.nanoTime() : 0;
+        long lap = start;
+        budget.begin(style.frameBudget);
+
+        cameraState.update(client);
+        WorldView worldView = client.getTopLevelWorldView();
+        if (worldView != null) {
+            tileHeights.update(client, worldView);
+        }
+
+        // The current target goes first, then the rest of the remembered targets
+        NpcIndexSet targets = plugin.getTargetMemory().getNpcs();
+        NPC current = plugin.getTarget();
+        if (current != null && targets.contains(current)) {
+            renderTarget(style, current);
+        }
+        for (int i = targets.nextIndex(0); i >= 0; i = targets.nextIndex(i + 1)) {
+            NPC npc = targets.get(i);
+            if (!rendered.contains(npc)) {
+                renderTarget(style, npc);
             }
         }
+        lap = lap(stats, FrameStats.Phase.TARGET_TILES, lap);
 
-        for (NPC npc : plugin.getTaggedNpcs()) {
-            if (!npcs.contains(npc)) {
-                Polygon p = renderTrueTile(graphics, npc);
-                if (p != null) {
-                    renderList.add(npc);
-                    renderPolyList.add(p);
-                }
+        if (style.highlightOnHover) {
+            NPC mousedNpc = plugin.getHoveredNpc();
+            if (mousedNpc != null && !rendered.contains(mousedNpc)) {
+                renderExtraNpc(style, mousedNpc);
             }
+            lap = lap(stats, FrameStats.Phase.HOVER, lap);
         }
 
-        if (client.isGpu() && config.improvedTileRendering()) {
-            for (NPC npc : renderList) {
-                ImprovedTileIndicatorsUtil.removeNpcFast(client, graphics, npc, renderPolyList);
+        NpcIndexSet tagged = plugin.getTaggedNpcs();
+        for (int i = tagged.nextIndex(0); i >= 0; i = tagged.nextIndex(i + 1)) {
+            NPC npc = tagged.get(i);
+            if (!rendered.contains(npc)) {
+                renderExtraNpc(style, npc);
             }
-            ImprovedTileIndicatorsUtil.removePlayerFast(client, graphics, client.getLocalPlayer(), renderPolyList);
         }
 
-        renderList.clear();
+        lap = lap(stats, FrameStats.Phase.TAGGED_TILES, lap);
+
+        tileBatch.flush(graphics, style);
+        lap = lap(stats, FrameStats.Phase.DRAW, lap);
+
+        if (client.isGpu() && style.improvedTileRendering) {
+            filterIndex.build(renderPolyList, style.borderStroke);
+            occlusionPass.begin(cameraState.getVersion(), filterIndex, style.occlusionMode);
+            long occlusionStart = System.nanoTime();
+            int occluded = 0;
+
+            // The player and the current target are always occluded, other NPCs in priority order while they fit in the budget
+            Player player = client.getLocalPlayer();
+            if (player != null) {
+                occlusionPass.add(client, player, ImprovedTileIndicatorsUtil.getPlayerLocalZ(client, player));
+                occluded++;
+            }
+            for (int i = 0; i < renderCount; i++) {
+                NPC npc = renderOrder[i];
+                OcclusionDetail detail = OcclusionDetail.forTileArea(tileAreas[npc.getIndex()], style);
+                if (detail != OcclusionDetail.NONE) {
+                    if (npc != current && !budget.admitOcclusion()) {
+                        budget.countDegraded();
+                        continue;
+                    }
+                    occluded++;
+                }
+                occlusionPass.add(client, npc, ImprovedTileIndicatorsUtil.getNpcLocalZ(client, npc), detail);
+            }
+            occlusionPass.run(client, graphics);
+            budget.recordOcclusion(System.nanoTime() - occlusionStart, occluded);
+            lap(stats, FrameStats.Phase.OCCLUSION, lap);
+            if (stats != null) {
+                stats.recordOcclusion(occlusionPass.getTotals());
+            }
+        }
+
+        lap(stats, FrameStats.Phase.TOTAL, start);
+        if (stats != null) {
+            stats.recordBudget(budget);
+        }
+        rendered.clear();
+        Arrays.fill(renderOrder, 0, renderCount, null);
+        renderCount = 0;
         renderPolyList.clear();
         return null;
     }
 
-    private Polygon renderTrueTile(Graphics2D graphics, NPC npc) {
-        return renderTrueTileForNpc(graphics, npc, config.tileColor(), config.tileFillColor(), config.tileCornerColor(), config.tileCornerLength(), config.borderSize());
+    // Records the time since the last lap, returns the new lap start
+    private static long lap(FrameStats stats, FrameStats.Phase phase, long since) {
+        if (stats == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        stats.record(phase, now - since);
+        return now;
     }
 
-    private List<Polygon> renderTrueTiles(Graphics2D graphics, Collection<NPC> npcs) {
-        List<Polygon> polygons = new ArrayList<>();
-        for (NPC npc : npcs) {
-            Polygon polygon = renderTrueTileForNpc(graphics, npc, config.tileColor(), config.tileFillColor(), config.tileCornerColor(), config.tileCornerLength(), config.borderSize());
-            if (polygon != null) {
-                polygons.add(polygon);
-            }
+    // Targets are occluded even when their tile can't be drawn
+    private void renderTarget(RenderStyle style, NPC npc) {
+        addRendered(npc);
+        Polygon p = renderTrueTileForNpc(style, npc);
+        if (p != null) {
+            renderPolyList.add(p);
         }
-        return polygons;
     }
 
-    private Polygon renderTrueTileForNpc(Graphics2D graphics, NPC npc, Color borderColor, Color innerColor, Color swColor, int cornerLength, int borderSize) {
+    // Hovered and tagged NPCs are only drawn and occluded when their tile can be drawn
+    private void renderExtraNpc(RenderStyle style, NPC npc) {
+        Polygon p = renderTrueTileForNpc(style, npc);
+        if (p != null) {
+            addRendered(npc);
+            renderPolyList.add(p);
+        }
+    }
+
+    private void addRendered(NPC npc) {
+        rendered.add(npc);
+        if (renderCount == renderOrder.length) {
+            renderOrder = Arrays.copyOf(renderOrder, renderCount * 2);
+        }
+        renderOrder[renderCount++] = npc;
+    }
+
+    // The scene was reloaded, cached tile projections can no longer be trusted
+    void invalidateTiles() {
+        cameraState.invalidate();
+        tileHeights.invalidate();
+    }
+
+    void clearTiles() {
+        tileCache.clear();
+        occlusionPass.clear();
+    }
+
+    // Queues the NPC's tile into the frame's batch, returns the tile polygon
+    private Polygon renderTrueTileForNpc(RenderStyle style, NPC npc) {
+        int index = npc.getIndex();
+        if (index >= tileAreas.length) {
+            tileAreas = Arrays.copyOf(tileAreas, Math.max(index + 1, tileAreas.length * 2));
+        }
+        tileAreas[index] = -1;
+
         if (npc.getComposition() == null) {
             return null;
         }
@@ -101,65 +204,51 @@ class TargetTrueTileOverlay extends Overlay {
         }
 
         WorldPoint target = npc.getWorldLocation();
-        LocalPoint point = LocalPoint.fromWorld(worldView, target);
-        if (point == null) {
-            return null;
-        }
-
         int size = npc.getComposition().getSize();
+        boolean showMark = style.showCorner && (!style.showCornerOnlyLarge || size > 1);
+        int markLength = showMark ? style.cornerLength * size : -1;
+
+        // Over budget, a tile projected under the previous camera is drawn again rather than projected anew, as long as the
+        // camera only took a small step since. Actors are occluded under the current camera, so the tile and its clear
+        // may be off by those few pixels for a frame.
+        TileCache.Entry tile = tileCache.get(npc);
+        if (!tile.matches(npc, target, size, markLength, cameraState.getVersion())) {
+            if (!budget.hasTime() && cameraState.isSmallStep() && tile.matches(npc, target, size, markLength, cameraState.getVersion() - 1)) {
+                budget.countDegraded();
+            } else if (!projectTile(worldView, tile, npc, target, size, markLength)) {
+                return null;
+            }
+        }
 
-        // 128 units per square, offset position to align larger enemies
-        LocalPoint renderPoint = new LocalPoint(point.getX() + 128*size/2 - 64, point.getY() + 128*size/2 - 64, worldView);
-        Polygon poly;
-
-        if (config.showCorner() && (!config.showCornerOnlyLarge() || size > 1)) {
+        Polygon poly = tile.getMarkPoly();
+        if (poly != null) {
             // Marks the SW corner mark of the tile
-            poly = PerspectiveUtil.getCanvasTileMarkPoly(client, renderPoint, size, cornerLength * size);
-            if (poly != null) {
-                OverlayUtil.renderPolygon(graphics, poly, swColor, swColor, new BasicStroke(borderSize));
-            }
+            tileBatch.addMark(poly);
         }
 
-        poly = Perspective.getCanvasTileAreaPoly(client, renderPoint, size);
+        poly = tile.getTilePoly();
         if (poly != null) {
-            switch (config.borderStyle()) {
-                case OUTLINE:
-                    OverlayUtil.renderPolygon(graphics, poly, borderColor, innerColor, new BasicStroke(borderSize));
-                    break;
-                case CORNERS:
-                    Color noBorder = new Color(0, 0, 0, 0);
-                    OverlayUtil.renderPolygon(graphics, poly, noBorder, innerColor, new BasicStroke(borderSize));
-                    renderCornersForTile(graphics, poly, borderColor, borderSize);
-                    break;
+            tileAreas[index] = tile.getTileArea();
+            tileBatch.addTile(poly);
+            if (style.borderStyle == BorderStyle.CORNERS) {
+                tileBatch.addCorners(poly, style.borderLength);
             }
         }
 
         return poly;
     }
 
-    private void renderCornersForTile(Graphics2D graphics, Polygon tilePoly, Color color, int borderSize) {
-        graphics.setColor(color);
-        graphics.setStroke(new BasicStroke(borderSize));
-
-        float length = config.borderLength() / 100.0f;
-
-        for (int i = 0; i < tilePoly.npoints; i++) {
-            int x = tilePoly.xpoints[i];
-            int y = tilePoly.ypoints[i];
-
-            int prevX = i - 1 < 0 ? tilePoly.xpoints[tilePoly.npoints - 1] : tilePoly.xpoints[i - 1];
-            int prevY = i - 1 < 0 ? tilePoly.ypoints[tilePoly.npoints - 1] : tilePoly.ypoints[i - 1];
-            int nextX = i + 1 >= tilePoly.npoints ? tilePoly.xpoints[0] : tilePoly.xpoints[i + 1];
-            int nextY = i + 1 >= tilePoly.npoints ? tilePoly.ypoints[0] : tilePoly.ypoints[i + 1];
-
-            renderPartialLine(graphics, x, y, prevX, prevY, length);
-            renderPartialLine(graphics, x, y, nextX, nextY, length);
+    private boolean projectTile(WorldView worldView, TileCache.Entry tile, NPC npc, WorldPoint target, int size, int markLength) {
+        LocalPoint point = LocalPoint.fromWorld(worldView, target);
+        if (point == null) {
+            return false;
         }
-    }
 
-    private static void renderPartialLine(Graphics2D graphics, int x1, int y1, int x2, int y2, float length) {
-        int deltaX = Math.round((x2 - x1) * length);
-        int deltaY = Math.round((y2 - y1) * length);
-        graphics.drawLine(x1, y1, x1 + deltaX, y1 + deltaY);
+        // 128 units per square, offset position to align larger enemies
+        LocalPoint renderPoint = new LocalPoint(point.getX() + 128*size/2 - 64, point.getY() + 128*size/2 - 64, worldView);
+
+        PerspectiveUtil.projectTile(client, tileHeights, renderPoint, size, markLength, tileGeometry);
+        tile.update(npc, target, size, markLength, cameraState.getVersion(), tileGeometry.getTilePoly(), tileGeometry.getMarkPoly());
+        return true;
     }
 }
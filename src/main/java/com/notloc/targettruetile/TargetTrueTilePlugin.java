@@ -13,11 +13,14 @@ import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
+import net.runelite.client.RuneLite;
 import net.runelite.client.plugins.npchighlight.NpcIndicatorsConfig;
 import net.runelite.client.ui.overlay.OverlayManager;
 import net.runelite.client.util.Text;
-import net.runelite.client.util.WildcardMatcher;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.*;
 
 @Slf4j
@@ -33,6 +36,7 @@ public class TargetTrueTilePlugin extends Plugin
 	@Inject private Client client;
 	@Inject private TargetTrueTileConfig config;
 	@Inject private TargetTrueTileOverlay overlay;
+	@Inject private TargetTrueTileStatsOverlay statsOverlay;
 
 	@Inject private OverlayManager overlayManager;
 	@Inject private ConfigManager configManager;
@@ -40,37 +44,87 @@ public class TargetTrueTilePlugin extends Plugin
 
 	@Getter
 	private NPC target;
+	// The NPC under the mouse, resolved once per client tick rather than every frame
+	@Getter
+	private NPC hoveredNpc;
 	@Getter
 	private final TargetMemory targetMemory = new TargetMemory();
 	@Getter
-	private final Set<NPC> taggedNpcs = new HashSet<>();
+	private final NpcIndexSet taggedNpcs = new NpcIndexSet();
+	@Getter
+	private volatile RenderStyle renderStyle;
+	@Getter
+	private final FrameStats frameStats = new FrameStats();
+
+	// Config keys that change which NPCs are tagged
+	private static final String NPC_INDICATORS_NAMES_KEY = "npcToHighlight";
+	private static final String INHERIT_TAGGED_KEY = "inherittagged";
+	private static final String CAPTURE_SCENE_KEY = "capturescene";
+
+	private static final File CAPTURE_DIR = new File(RuneLite.RUNELITE_DIR, "target-true-tile");
 
 	// NPCs tagged by name via the NPC Indicators plugin
-	private Set<String> taggedNames = new HashSet<>();
+	private TagMatcher taggedNames = TagMatcher.EMPTY;
+	private Set<String> taggedPatterns = new HashSet<>();
+
+	// Tag changes are applied at most once per client tick, config sliders can fire many changes in a row
+	private volatile boolean taggedNamesChanged;
+	private volatile boolean tagRebuildRequired;
+
+	// Specific NPCs tagged by index, cleared when changing worlds and pruned to the NPCs still around after a scene load
+	private final BitSet taggedIndexes = new BitSet();
+	private boolean pruneTaggedIndexes;
 
-	// Specific NPCs tagged during this session.
-	private final Set<Integer> taggedIndexes = new HashSet<>();
+	// Whether the last hovered NPC is a valid target, until it or its composition changes.
+	// Only touched on the client thread, a config change drops it on the next client tick.
+	private NPC hoverCheckedNpc;
+	private NPCComposition hoverCheckedComposition;
+	private boolean hoverCheckedValid;
+	private volatile boolean hoverCheckChanged;
+
+	// Only touched on the client thread, the config toggle is applied on the next client tick
+	private SceneRecorder sceneRecorder;
+	private final NpcIndexSet capturedNpcs = new NpcIndexSet();
+	private volatile boolean captureChanged;
 
 	@Override
 	protected void startUp() {
+		renderStyle = RenderStyle.fromConfig(config);
 		overlayManager.add(overlay);
+		overlayManager.add(statsOverlay);
 		clientThread.invokeLater(this::rebuildTaggedTargets);
+		captureChanged = true;
 	}
 
 	@Override
 	protected void shutDown() {
 		overlayManager.remove(overlay);
+		overlayManager.remove(statsOverlay);
+		overlay.clearTiles();
 		targetMemory.forgetAll();
 		target = null;
+		hoveredNpc = null;
+		hoverCheckChanged = true;
 		taggedNpcs.clear();
+		clientThread.invoke(this::stopSceneCapture);
 	}
 
 	@Subscribe
 	public void onGameStateChanged(GameStateChanged gameStateChanged) {
 		if (gameStateChanged.getGameState() == GameState.LOGIN_SCREEN || gameStateChanged.getGameState() == GameState.HOPPING) {
 			target = null;
+			hoveredNpc = null;
+			hoverCheckedNpc = null;
 			targetMemory.forgetAll();
 			taggedNpcs.clear();
+			taggedIndexes.clear();
+			overlay.clearTiles();
+		} else if (gameStateChanged.getGameState() == GameState.LOADING) {
+			pruneTaggedIndexes = true;
+			overlay.invalidateTiles();
+			if (sceneRecorder != null) {
+				sceneRecorder.invalidateScene();
+			}
 		}
 	}
 
@@ -80,13 +134,71 @@ public class TargetTrueTilePlugin extends Plugin
 		if (!group.equals(TargetTrueTileConfig.CONFIG_GROUP) && !group.equals(NpcIndicatorsConfig.GROUP)) {
 			return;
 		}
-		clientThread.invokeLater(this::rebuildTaggedTargets);
+		if (group.equals(TargetTrueTileConfig.CONFIG_GROUP)) {
+			renderStyle = RenderStyle.fromConfig(config);
+			// Validity depends on whether friendly NPCs are shown
+			hoverCheckChanged = true;
+			if (INHERIT_TAGGED_KEY.equals(event.getKey())) {
+				tagRebuildRequired = true;
+			} else if (CAPTURE_SCENE_KEY.equals(event.getKey())) {
+				captureChanged = true;
+			}
+		} else if (NPC_INDICATORS_NAMES_KEY.equals(event.getKey())) {
+			taggedNamesChanged = true;
+		}
+	}
+
+	@Subscribe
+	public void onClientTick(ClientTick clientTick) {
+		if (tagRebuildRequired) {
+			tagRebuildRequired = false;
+			taggedNamesChanged = false;
+			rebuildTaggedTargets();
+		} else if (taggedNamesChanged) {
+			taggedNamesChanged = false;
+			updateTaggedNames();
+		}
+
+		if (hoverCheckChanged) {
+			hoverCheckChanged = false;
+			hoverCheckedNpc = null;
+		}
+		updateHoveredNpc();
+
+		if (captureChanged) {
+			captureChanged = false;
+			if (config.captureScene()) {
+				startSceneCapture();
+			} else {
+				stopSceneCapture();
+			}
+		}
 	}
 
 	@Subscribe
 	public void onGameTick(GameTick e) {
+		if (pruneTaggedIndexes) {
+			pruneTaggedIndexes = false;
+			pruneTaggedIndexes();
+		}
+
 		processCurrentTarget();
-		targetMemory.forgetOldTargets(config.targetTimeout());
+		targetMemory.forgetOldTargets(client.getTickCount());
+
+		if (sceneRecorder != null) {
+			try {
+				sceneRecorder.tick(client.getTickCount());
+			} catch (IOException ex) {
+				failSceneCapture(ex);
+			}
+		}
+	}
+
+	@Subscribe
+	public void onBeforeRender(BeforeRender beforeRender) {
+		if (sceneRecorder != null) {
+			captureFrame();
+		}
 	}
 
 	@Subscribe
@@ -104,6 +216,19 @@ public class TargetTrueTilePlugin extends Plugin
 		final NPC npc = npcDespawned.getNpc();
 		taggedNpcs.remove(npc);
 		targetMemory.forgetTarget(npc);
+		if (npc == hoveredNpc) {
+			hoveredNpc = null;
+		}
+		if (npc == hoverCheckedNpc) {
+			hoverCheckedNpc = null;
+		}
+	}
+
+	@Subscribe
+	public void onActorDeath(ActorDeath actorDeath) {
+		if (actorDeath.getActor() instanceof NPC) {
+			targetMemory.forgetTarget((NPC) actorDeath.getActor());
+		}
 	}
 
 	@Subscribe
@@ -141,33 +266,81 @@ public class TargetTrueTilePlugin extends Plugin
 	}
 
 	private void toggleIndexTag(NPC npc, boolean state) {
-		if (state) {
-			taggedIndexes.add(npc.getIndex());
+		taggedIndexes.set(npc.getIndex(), state);
+
+		if (isTaggedNpc(npc)) {
+			taggedNpcs.add(npc);
 		} else {
-			taggedIndexes.remove(npc.getIndex());
+			taggedNpcs.remove(npc);
+		}
+	}
+
+	// NPC updates have arrived by the first tick after a load, any index not in the scene by then is someone else's
+	private void pruneTaggedIndexes() {
+		WorldView worldView = getLoadedWorldView();
+		if (worldView == null || taggedIndexes.isEmpty()) {
+			return;
 		}
-		rebuildTaggedTargets();
+
+		BitSet present = new BitSet();
+		worldView.npcs().forEach(npc -> present.set(npc.getIndex()));
+		taggedIndexes.and(present);
 	}
 
 	private void rebuildTaggedTargets() {
 		taggedNpcs.clear();
-		taggedNames.clear();
+		loadTaggedPatterns();
 
-		NpcIndicatorsConfig npcIndicatorsConfig = configManager.getConfig(NpcIndicatorsConfig.class);
-		taggedNames = new HashSet<>(Text.fromCSV(npcIndicatorsConfig.getNpcToHighlight()));
+		WorldView worldView = getLoadedWorldView();
+		if (worldView == null) {
+			return;
+		}
 
-		if (client.getGameState() == GameState.LOGGED_IN || client.getGameState() == GameState.LOADING) {
-			WorldView worldView = client.getTopLevelWorldView();
-			if (worldView == null) {
-				return;
+		worldView.npcs().forEach(npc -> {
+			if (isTaggedNpc(npc)) {
+				taggedNpcs.add(npc);
 			}
+		});
+	}
 
-			worldView.npcs().forEach(npc -> {
-				if (isTaggedNpc(npc)) {
-					taggedNpcs.add(npc);
-				}
-			});
+	// Applies only the patterns added or removed since the last update
+	private void updateTaggedNames() {
+		Set<String> oldPatterns = taggedPatterns;
+		loadTaggedPatterns();
+
+		Set<String> added = new HashSet<>(taggedPatterns);
+		added.removeAll(oldPatterns);
+		boolean anyRemoved = !taggedPatterns.containsAll(oldPatterns);
+
+		if (anyRemoved) {
+			taggedNpcs.removeIf(npc -> !isTaggedNpc(npc));
 		}
+
+		WorldView worldView = getLoadedWorldView();
+		if (added.isEmpty() || worldView == null || !config.inheritTaggedNpcs()) {
+			return;
+		}
+
+		TagMatcher addedNames = new TagMatcher(added);
+		worldView.npcs().forEach(npc -> {
+			String name = npc.getName();
+			if (name != null && !taggedNpcs.contains(npc) && addedNames.matches(name)) {
+				taggedNpcs.add(npc);
+			}
+		});
+	}
+
+	private void loadTaggedPatterns() {
+		NpcIndicatorsConfig npcIndicatorsConfig = configManager.getConfig(NpcIndicatorsConfig.class);
+		taggedPatterns = new HashSet<>(Text.fromCSV(npcIndicatorsConfig.getNpcToHighlight()));
+		taggedNames = new TagMatcher(taggedPatterns);
+	}
+
+	private WorldView getLoadedWorldView() {
+		if (client.getGameState() != GameState.LOGGED_IN && client.getGameState() != GameState.LOADING) {
+			return null;
+		}
+		return client.getTopLevelWorldView();
 	}
 
 	private void processCurrentTarget() {
@@ -177,16 +350,34 @@ public class TargetTrueTilePlugin extends Plugin
 
 		if (isValidTarget(target)) {
 			if (!config.allowMultipleTargets()) {
-				targetMemory.forgetAll();
+				targetMemory.forgetAllExcept(target);
 			}
-			targetMemory.acknowledgeTarget(target);
+			targetMemory.acknowledgeTarget(target, client.getTickCount(), secondsToTicks(config.targetTimeout()));
 		} else {
 			targetMemory.forgetTarget(target);
 			target = null;
 		}
 	}
 
-	public NPC findNpcUnderMouse() {
+	private static int secondsToTicks(int seconds) {
+		return (seconds * 1000 + 599) / 600;
+	}
+
+	// The menu is rebuilt every client tick, so that is as often as the hovered NPC can change
+	private void updateHoveredNpc() {
+		if (!renderStyle.highlightOnHover) {
+			hoveredNpc = null;
+			return;
+		}
+
+		// An open menu's entries say nothing about what is under the mouse, keep the last hover until it closes
+		if (client.isMenuOpen()) {
+			return;
+		}
+		hoveredNpc = findNpcUnderMouse();
+	}
+
+	private NPC findNpcUnderMouse() {
 		MenuEntry[] menuEntries = client.getMenu().getMenuEntries();
 		if (menuEntries.length == 0) {
 			return null;
@@ -194,7 +385,106 @@ public class TargetTrueTilePlugin extends Plugin
 
 		MenuEntry entry = menuEntries[menuEntries.length - 1];
 		NPC npc = entry.getNpc();
-		return isValidTarget(npc) ? npc : null;
+		return isValidHover(npc) ? npc : null;
+	}
+
+	private boolean isValidHover(NPC npc) {
+		if (npc == null) {
+			return false;
+		}
+
+		NPCComposition composition = npc.getComposition();
+		if (npc != hoverCheckedNpc || composition != hoverCheckedComposition) {
+			hoverCheckedNpc = npc;
+			hoverCheckedComposition = composition;
+			hoverCheckedValid = isValidTarget(npc);
+		}
+		return hoverCheckedValid;
+	}
+
+	private void startSceneCapture() {
+		if (sceneRecorder != null) {
+			return;
+		}
+
+		File file = new File(CAPTURE_DIR, "capture-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".ttc");
+		try {
+			CAPTURE_DIR.mkdirs();
+			sceneRecorder = new SceneRecorder(file.toPath());
+			log.info("Recording scene capture to {}", file);
+		} catch (IOException e) {
+			log.warn("Unable to start scene capture", e);
+		}
+	}
+
+	private void stopSceneCapture() {
+		if (sceneRecorder == null) {
+			return;
+		}
+
+		try {
+			sceneRecorder.close();
+		} catch (IOException e) {
+			log.warn("Unable to finish scene capture", e);
+		}
+		sceneRecorder = null;
+		capturedNpcs.clear();
+	}
+
+	private void failSceneCapture(IOException e) {
+		log.warn("Scene capture failed, recording stopped", e);
+		stopSceneCapture();
+	}
+
+	// Records the actors the overlay draws this frame, with the reasons each one is drawn
+	private void captureFrame() {
+		WorldView worldView = client.getTopLevelWorldView();
+		if (worldView == null || client.getGameState() != GameState.LOGGED_IN) {
+			return;
+		}
+
+		NPC hovered = renderStyle.highlightOnHover ? hoveredNpc : null;
+		NpcIndexSet remembered = targetMemory.getNpcs();
+		for (int i = remembered.nextIndex(0); i >= 0; i = remembered.nextIndex(i + 1)) {
+			capturedNpcs.add(remembered.get(i));
+		}
+		for (int i = taggedNpcs.nextIndex(0); i >= 0; i = taggedNpcs.nextIndex(i + 1)) {
+			capturedNpcs.add(taggedNpcs.get(i));
+		}
+		if (hovered != null) {
+			capturedNpcs.add(hovered);
+		}
+		if (target != null) {
+			capturedNpcs.add(target);
+		}
+
+		try {
+			sceneRecorder.beginFrame(client, worldView);
+			Player player = client.getLocalPlayer();
+			if (player != null) {
+				sceneRecorder.addActor(player, -1, SceneRecorder.FLAG_PLAYER, 1, player.getFootprintSize());
+			}
+			for (int i = capturedNpcs.nextIndex(0); i >= 0; i = capturedNpcs.nextIndex(i + 1)) {
+				NPC npc = capturedNpcs.get(i);
+				NPCComposition composition = npc.getComposition();
+				if (composition == null) {
+					continue;
+				}
+
+				int flags = 0;
+				flags |= npc == target ? SceneRecorder.FLAG_TARGET : 0;
+				flags |= targetMemory.getNpcs().contains(npc) ? SceneRecorder.FLAG_REMEMBERED : 0;
+				flags |= taggedNpcs.contains(npc) ? SceneRecorder.FLAG_TAGGED : 0;
+				flags |= npc == hovered ? SceneRecorder.FLAG_HOVERED : 0;
+				flags |= isNpcAttackable(npc) ? SceneRecorder.FLAG_ATTACKABLE : 0;
+				sceneRecorder.addActor(npc, npc.getIndex(), flags, composition.getSize(), composition.getFootprintSize());
+			}
+			sceneRecorder.endFrame();
+		} catch (IOException e) {
+			failSceneCapture(e);
+		} finally {
+			capturedNpcs.clear();
+		}
 	}
 
 	private boolean isTaggedNpc(NPC npc) {
@@ -202,19 +492,12 @@ public class TargetTrueTilePlugin extends Plugin
 			return false;
 		}
 
-		if (taggedIndexes.contains(npc.getIndex())) {
+		if (taggedIndexes.get(npc.getIndex())) {
 			return true;
 		}
 
 		String name = npc.getName();
-		if (name != null) {
-			for (String manual : taggedNames) {
-				if (WildcardMatcher.matches(manual, name)) {
-					return true;
-				}
-			}
-		}
-		return false;
+		return name != null && taggedNames.matches(name);
 	}
 
 	private boolean isValidTarget(NPC npc) {
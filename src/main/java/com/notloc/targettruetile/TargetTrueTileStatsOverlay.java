@@ -0,0 +1,71 @@
+package com.notloc.targettruetile;
+
+import net.runelite.client.ui.overlay.OverlayPanel;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.LineComponent;
+import net.runelite.client.ui.overlay.components.TitleComponent;
+
+import javax.inject.Inject;
+import java.awt.*;
+
+// Rolling p50 / p99 render timings in microseconds, for diagnosing stutter without a profiler
+class TargetTrueTileStatsOverlay extends OverlayPanel {
+    private final TargetTrueTilePlugin plugin;
+    private boolean wasShown;
+
+    @Inject
+    private TargetTrueTileStatsOverlay(TargetTrueTilePlugin plugin) {
+        super(plugin);
+        this.plugin = plugin;
+        setPosition(OverlayPosition.TOP_LEFT);
+        panelComponent.setPreferredSize(new Dimension(200, 0));
+    }
+
+    @Override
+    public Dimension render(Graphics2D graphics) {
+        if (!plugin.getRenderStyle().showDebugStats) {
+            if (wasShown) {
+                plugin.getFrameStats().reset();
+                wasShown = false;
+            }
+            return null;
+        }
+        wasShown = true;
+
+        FrameStats stats = plugin.getFrameStats();
+        panelComponent.getChildren().add(TitleComponent.builder()
+                .text("Target True Tile (p50 / p99 us)")
+                .build());
+
+        for (FrameStats.Phase phase : FrameStats.Phase.values()) {
+            panelComponent.getChildren().add(LineComponent.builder()
+                    .left(phase.getLabel())
+                    .right(micros(stats.percentile(phase, 0.5)) + " / " + micros(stats.percentile(phase, 0.99)))
+                    .build());
+        }
+
+        addCount("Triangles", stats.getTrianglesProjected());
+        addCount("Backface culled", stats.getBackfaceCulled());
+        addCount("Decimated", stats.getDecimated());
+        addCount("Filter culled", stats.getFilterCulled());
+        addCount("Merged polygons", stats.getMergedPolygons());
+        addCount("Actors skipped", stats.getActorsSkipped());
+        addCount("Actors coarse", stats.getActorsCoarse());
+        addCount("Actors beyond LOD", stats.getActorsBeyondDetail());
+        addCount("Over budget NPCs", stats.getDegradedNpcs());
+        addCount("Over budget frames", stats.getDegradedFrames());
+
+        return super.render(graphics);
+    }
+
+    private void addCount(String label, int count) {
+        panelComponent.getChildren().add(LineComponent.builder()
+                .left(label)
+                .right(Integer.toString(count))
+                .build());
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+}
@@ -0,0 +1,97 @@
+package com.notloc.targettruetile;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+
+// Collects every tile drawn in a frame into a few shapes, so each style is drawn with a single stroke and fill.
+// Overlapping tiles are filled once rather than stacking their alpha.
+class TileBatch {
+    private final Path2D.Float tiles = new Path2D.Float(Path2D.WIND_NON_ZERO, 256);
+    private final Path2D.Float corners = new Path2D.Float(Path2D.WIND_NON_ZERO, 256);
+    private final Path2D.Float marks = new Path2D.Float(Path2D.WIND_NON_ZERO, 64);
+
+    private boolean hasTiles;
+    private boolean hasCorners;
+    private boolean hasMarks;
+
+    public void addTile(Polygon poly) {
+        appendPolygon(tiles, poly);
+        hasTiles = true;
+    }
+
+    public void addMark(Polygon poly) {
+        appendPolygon(marks, poly);
+        hasMarks = true;
+    }
+
+    // The start of each edge, from both ends of every corner
+    public void addCorners(Polygon tilePoly, float length) {
+        int n = tilePoly.npoints;
+        for (int i = 0; i < n; i++) {
+            int x = tilePoly.xpoints[i];
+            int y = tilePoly.ypoints[i];
+
+            int prev = i - 1 < 0 ? n - 1 : i - 1;
+            int next = i + 1 >= n ? 0 : i + 1;
+
+            addPartialLine(x, y, tilePoly.xpoints[prev], tilePoly.ypoints[prev], length);
+            addPartialLine(x, y, tilePoly.xpoints[next], tilePoly.ypoints[next], length);
+        }
+        hasCorners = true;
+    }
+
+    public void flush(Graphics2D graphics, RenderStyle style) {
+        Stroke originalStroke = graphics.getStroke();
+        graphics.setStroke(style.borderStroke);
+
+        if (hasMarks) {
+            graphics.setColor(style.cornerColor);
+            graphics.draw(marks);
+            graphics.fill(marks);
+        }
+
+        if (hasTiles) {
+            if (style.borderStyle == BorderStyle.OUTLINE) {
+                graphics.setColor(style.borderColor);
+                graphics.draw(tiles);
+            }
+            graphics.setColor(style.fillColor);
+            graphics.fill(tiles);
+        }
+
+        if (hasCorners) {
+            graphics.setColor(style.borderColor);
+            graphics.draw(corners);
+        }
+
+        graphics.setStroke(originalStroke);
+        reset();
+    }
+
+    public void reset() {
+        tiles.reset();
+        corners.reset();
+        marks.reset();
+        hasTiles = false;
+        hasCorners = false;
+        hasMarks = false;
+    }
+
+    private void addPartialLine(int x1, int y1, int x2, int y2, float length) {
+        int deltaX = Math.round((x2 - x1) * length);
+        int deltaY = Math.round((y2 - y1) * length);
+        corners.moveTo(x1, y1);
+        corners.lineTo(x1 + deltaX, y1 + deltaY);
+    }
+
+    private static void appendPolygon(Path2D.Float path, Polygon poly) {
+        if (poly.npoints == 0) {
+            return;
+        }
+        path.moveTo(poly.xpoints[0], poly.ypoints[0]);
+        for (int i = 1; i < poly.npoints; i++) {
+            path.lineTo(poly.xpoints[i], poly.ypoints[i]);
+        }
+        path.closePath();
+    }
+}
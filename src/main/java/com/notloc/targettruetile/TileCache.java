@@ -0,0 +1,87 @@
+package com.notloc.targettruetile;
+
+import lombok.Getter;
+import net.runelite.api.NPC;
+import net.runelite.api.coords.WorldPoint;
+
+import java.awt.*;
+import java.util.Arrays;
+
+// Projected tile polygons per NPC index.
+// True tiles only move once per game tick and the camera is often still, so most frames reuse the last projection.
+class TileCache {
+    private Entry[] entries = new Entry[256];
+
+    public Entry get(NPC npc) {
+        int index = npc.getIndex();
+        if (index >= entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(index + 1, entries.length * 2));
+        }
+
+        Entry entry = entries[index];
+        if (entry == null) {
+            entry = new Entry();
+            entries[index] = entry;
+        }
+        return entry;
+    }
+
+    public void clear() {
+        Arrays.fill(entries, null);
+    }
+
+    static class Entry {
+        private NPC npc;
+        private int worldX, worldY, plane;
+        private int size;
+        private int markLength;
+        private int cameraVersion;
+
+        @Getter
+        private Polygon tilePoly;
+        @Getter
+        private Polygon markPoly;
+        // Screen area of the tile polygon in pixels, 0 without one
+        @Getter
+        private int tileArea;
+
+        private boolean valid;
+
+        public boolean matches(NPC npc, WorldPoint location, int size, int markLength, int cameraVersion) {
+            return matchesTile(npc, location, size, markLength) && this.cameraVersion == cameraVersion;
+        }
+
+        // Whether this is the NPC's current tile, projected under any camera
+        private boolean matchesTile(NPC npc, WorldPoint location, int size, int markLength) {
+            return valid
+                    && this.npc == npc
+                    && this.worldX == location.getX()
+                    && this.worldY == location.getY()
+                    && this.plane == location.getPlane()
+                    && this.size == size
+                    && this.markLength == markLength;
+        }
+
+        public void update(NPC npc, WorldPoint location, int size, int markLength, int cameraVersion, Polygon tilePoly, Polygon markPoly) {
+            this.npc = npc;
+            this.worldX = location.getX();
+            this.worldY = location.getY();
+            this.plane = location.getPlane();
+            this.size = size;
+            this.markLength = markLength;
+            this.cameraVersion = cameraVersion;
+            this.tilePoly = tilePoly;
+            this.markPoly = markPoly;
+            this.tileArea = tilePoly != null ? area(tilePoly) : 0;
+            this.valid = true;
+        }
+
+        private static int area(Polygon poly) {
+            long twiceArea = 0;
+            for (int i = 0, j = poly.npoints - 1; i < poly.npoints; j = i++) {
+                twiceArea += (long) poly.xpoints[j] * poly.ypoints[i] - (long) poly.xpoints[i] * poly.ypoints[j];
+            }
+            return (int) Math.min(Integer.MAX_VALUE, Math.abs(twiceArea) / 2);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.notloc.targettruetile;
+
+import lombok.Getter;
+
+import java.awt.*;
+
+// Output of PerspectiveUtil.projectTile, along with the point buffers it projects through.
+// The polygons are new on every projection, the caches downstream tell tiles apart by reference.
+class TileGeometry {
+    final float[] x = new float[6];
+    final float[] y = new float[6];
+    final float[] z = new float[6];
+    final int[] x2d = new int[6];
+    final int[] y2d = new int[6];
+
+    @Getter
+    Polygon tilePoly;
+    @Getter
+    Polygon markPoly;
+}
@@ -0,0 +1,105 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.Scene;
+import net.runelite.api.WorldView;
+
+// Corner heights and bridge flags of the loaded scene, copied out once per scene load.
+// Tile and corner mark projection then read plain arrays instead of going through the scene for every corner.
+class TileHeightCache {
+    private static final int SCENE_OFFSET = 40; // extended scene tiles around the loaded scene
+    private static final int BRIDGE_FLAG = 2;
+    private static final int MAX_PLANE = 3;
+
+    private Scene scene;
+    private boolean valid;
+
+    // Heights are per tile corner, flattened as [plane][x][y]
+    private int planes;
+    private int tiles;
+    private int vertices;
+    private int[] heights = new int[0];
+    // Tiles whose plane 1 is a bridge, those draw on the plane above
+    private boolean[] bridges = new boolean[0];
+
+    // The scene is reloading, the next update rebuilds
+    public void invalidate() {
+        valid = false;
+    }
+
+    // A build made while the scene is still loading isn't kept, the heights may not be final yet
+    public void update(Client client, WorldView worldView) {
+        Scene scene = worldView.getScene();
+        if (valid && scene == this.scene) {
+            return;
+        }
+
+        build(scene);
+        this.scene = scene;
+        this.valid = client.getGameState() == GameState.LOGGED_IN;
+    }
+
+    private void build(Scene scene) {
+        int[][][] tileHeights = scene != null ? scene.getTileHeights() : null;
+        byte[][][] tileSettings = scene != null ? scene.getExtendedTileSettings() : null;
+        if (tileHeights == null || tileSettings == null || tileSettings.length < 2 || tileHeights.length == 0) {
+            planes = 0;
+            tiles = 0;
+            vertices = 0;
+            return;
+        }
+
+        planes = tileHeights.length;
+        tiles = Math.min(tileHeights[0].length - 1, tileSettings[1].length);
+        vertices = tiles + 1;
+
+        if (heights.length < planes * vertices * vertices) {
+            heights = new int[planes * vertices * vertices];
+        }
+        for (int p = 0; p < planes; p++) {
+            for (int x = 0; x < vertices; x++) {
+                System.arraycopy(tileHeights[p][x], 0, heights, (p * vertices + x) * vertices, vertices);
+            }
+        }
+
+        if (bridges.length < tiles * tiles) {
+            bridges = new boolean[tiles * tiles];
+        }
+        for (int x = 0; x < tiles; x++) {
+            for (int y = 0; y < tiles; y++) {
+                bridges[x * tiles + y] = (tileSettings[1][x][y] & BRIDGE_FLAG) == BRIDGE_FLAG;
+            }
+        }
+    }
+
+    // Whether the local point lies on a tile of the extended scene
+    public boolean contains(int localX, int localY) {
+        int sceneX = (localX >> 7) + SCENE_OFFSET;
+        int sceneY = (localY >> 7) + SCENE_OFFSET;
+        return sceneX >= 0 && sceneY >= 0 && sceneX < tiles && sceneY < tiles;
+    }
+
+    // The plane whose heights a tile on the given plane is drawn at, the point must be contained
+    public int getTilePlane(int localX, int localY, int plane) {
+        int sceneX = (localX >> 7) + SCENE_OFFSET;
+        int sceneY = (localY >> 7) + SCENE_OFFSET;
+        return plane < MAX_PLANE && bridges[sceneX * tiles + sceneY] ? plane + 1 : plane;
+    }
+
+    // Adapted from runelite-api Perspective.java, interpolates between the corners of the tile under the point
+    public int getHeight(int localX, int localY, int plane) {
+        if (!contains(localX, localY) || plane >= planes) {
+            return 0;
+        }
+
+        int sceneX = (localX >> 7) + SCENE_OFFSET;
+        int sceneY = (localY >> 7) + SCENE_OFFSET;
+        int i = (plane * vertices + sceneX) * vertices + sceneY;
+        int x = localX & 127;
+        int y = localY & 127;
+        int south = x * heights[i + vertices] + (128 - x) * heights[i] >> 7;
+        int north = heights[i + 1] * (128 - x) + x * heights[i + vertices + 1] >> 7;
+        return (128 - y) * south + y * north >> 7;
+    }
+}
@@ -0,0 +1,32 @@
+package com.notloc.targettruetile;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+// Flat growable list of screen space triangles, six coordinates each
+class TriangleList implements TriangleSink {
+    @Getter
+    private int[] coordinates = new int[6 * 64];
+    @Getter
+    private int size;
+
+    @Override
+    public void addTriangle(int x1, int y1, int x2, int y2, int x3, int y3) {
+        int i = size * 6;
+        if (i + 6 > coordinates.length) {
+            coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+        }
+        coordinates[i] = x1;
+        coordinates[i + 1] = y1;
+        coordinates[i + 2] = x2;
+        coordinates[i + 3] = y2;
+        coordinates[i + 4] = x3;
+        coordinates[i + 5] = y3;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,271 @@
+package com.notloc.targettruetile;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Merges triangles into larger polygons to reduce draw calls.
+// Each polygon is a ring of vertices, when a new triangle shares an edge with a ring its third vertex is spliced into that edge.
+// Edges are packed into long keys in an open addressing table and the rings live in plain int arrays,
+// so once the buffers have grown to fit the largest model nothing is allocated.
+class TriangleMerger implements TriangleSink {
+    private static final int INITIAL_VERTICES = 256;
+    private static final int INITIAL_EDGES = 512;
+
+    // Vertex rings, one node per vertex
+    private int[] vertexX;
+    private int[] vertexY;
+    private int[] vertexNext;
+    private int vertexCount;
+
+    // First node of each ring
+    private int[] ringStart;
+    private int ringCount;
+
+    // Edge table, maps an undirected edge to the ring node it leaves from
+    // A slot is occupied only while its stamp matches the current one, letting reset() skip clearing the table
+    private long[] edgeKeys;
+    private int[] edgeNodes;
+    private int[] edgeStamps;
+    private int edgeMask;
+    private int edgeCount;
+    private int stamp = 1;
+
+    private final List<Polygon> polygonPool = new ArrayList<>();
+    private final List<Polygon> polygons = new ArrayList<>();
+
+    TriangleMerger() {
+        this(INITIAL_VERTICES, INITIAL_EDGES);
+    }
+
+    // The edge capacity must be a power of two. Tests start small to reach growth and wraparound with few triangles.
+    TriangleMerger(int initialVertices, int initialEdges) {
+        vertexX = new int[initialVertices];
+        vertexY = new int[initialVertices];
+        vertexNext = new int[initialVertices];
+        ringStart = new int[Math.max(1, initialVertices / 3)];
+
+        edgeKeys = new long[initialEdges];
+        edgeNodes = new int[initialEdges];
+        edgeStamps = new int[initialEdges];
+        edgeMask = initialEdges - 1;
+    }
+
+    public void reset() {
+        vertexCount = 0;
+        ringCount = 0;
+        edgeCount = 0;
+        polygons.clear();
+
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(edgeStamps, 0);
+            stamp = 1;
+        }
+    }
+
+    @Override
+    public void addTriangle(int x1, int y1, int x2, int y2, int x3, int y3) {
+        if (!fitsKey(x1, y1) || !fitsKey(x2, y2) || !fitsKey(x3, y3)) {
+            // Can't be keyed, so keep it as a polygon of its own
+            addRing(x1, y1, x2, y2, x3, y3);
+            return;
+        }
+
+        long e1 = edgeKey(x1, y1, x2, y2);
+        long e2 = edgeKey(x2, y2, x3, y3);
+        long e3 = edgeKey(x3, y3, x1, y1);
+
+        int slot;
+        if ((slot = findEdge(e1)) >= 0) {
+            spliceVertex(slot, x3, y3);
+        } else if ((slot = findEdge(e2)) >= 0) {
+            spliceVertex(slot, x1, y1);
+        } else if ((slot = findEdge(e3)) >= 0) {
+            spliceVertex(slot, x2, y2);
+        } else {
+            int start = addRing(x1, y1, x2, y2, x3, y3);
+            putEdge(e1, start);
+            putEdge(e2, start + 1);
+            putEdge(e3, start + 2);
+        }
+    }
+
+    // The returned polygons are owned by the merger and are only valid until the next reset()
+    public List<Polygon> getPolygons() {
+        polygons.clear();
+        for (int i = 0; i < ringCount; i++) {
+            Polygon polygon = getPooledPolygon(i);
+
+            int start = ringStart[i];
+            int count = 0;
+            int node = start;
+            do {
+                count++;
+                node = vertexNext[node];
+            } while (node != start);
+
+            if (polygon.xpoints.length < count) {
+                polygon.xpoints = new int[count];
+                polygon.ypoints = new int[count];
+            }
+
+            int n = 0;
+            node = start;
+            do {
+                polygon.xpoints[n] = vertexX[node];
+                polygon.ypoints[n] = vertexY[node];
+                n++;
+                node = vertexNext[node];
+            } while (node != start);
+
+            polygon.npoints = count;
+            polygon.invalidate();
+            polygons.add(polygon);
+        }
+        return polygons;
+    }
+
+    // Inserts a vertex into the ring edge stored at the slot, replacing that edge with the two new ones
+    private void spliceVertex(int slot, int x, int y) {
+        int a = edgeNodes[slot];
+        int b = vertexNext[a];
+        removeEdge(slot);
+
+        int c = addVertex(x, y);
+        vertexNext[a] = c;
+        vertexNext[c] = b;
+
+        putEdge(edgeKey(vertexX[a], vertexY[a], x, y), a);
+        putEdge(edgeKey(x, y, vertexX[b], vertexY[b]), c);
+    }
+
+    private int addRing(int x1, int y1, int x2, int y2, int x3, int y3) {
+        int v1 = addVertex(x1, y1);
+        int v2 = addVertex(x2, y2);
+        int v3 = addVertex(x3, y3);
+        vertexNext[v1] = v2;
+        vertexNext[v2] = v3;
+        vertexNext[v3] = v1;
+
+        if (ringCount == ringStart.length) {
+            ringStart = Arrays.copyOf(ringStart, ringCount * 2);
+        }
+        ringStart[ringCount++] = v1;
+        return v1;
+    }
+
+    private int addVertex(int x, int y) {
+        if (vertexCount == vertexX.length) {
+            int capacity = vertexCount * 2;
+            vertexX = Arrays.copyOf(vertexX, capacity);
+            vertexY = Arrays.copyOf(vertexY, capacity);
+            vertexNext = Arrays.copyOf(vertexNext, capacity);
+        }
+        vertexX[vertexCount] = x;
+        vertexY[vertexCount] = y;
+        return vertexCount++;
+    }
+
+    private Polygon getPooledPolygon(int index) {
+        if (index == polygonPool.size()) {
+            polygonPool.add(new Polygon(new int[8], new int[8], 0));
+        }
+        return polygonPool.get(index);
+    }
+
+    private int findEdge(long key) {
+        int slot = hash(key) & edgeMask;
+        while (edgeStamps[slot] == stamp) {
+            if (edgeKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & edgeMask;
+        }
+        return -1;
+    }
+
+    // Overwrites any existing entry for the edge
+    private void putEdge(long key, int node) {
+        if ((edgeCount + 1) * 2 > edgeKeys.length) {
+            growEdges();
+        }
+
+        int slot = hash(key) & edgeMask;
+        while (edgeStamps[slot] == stamp) {
+            if (edgeKeys[slot] == key) {
+                edgeNodes[slot] = node;
+                return;
+            }
+            slot = (slot + 1) & edgeMask;
+        }
+        edgeKeys[slot] = key;
+        edgeNodes[slot] = node;
+        edgeStamps[slot] = stamp;
+        edgeCount++;
+    }
+
+    // Backward shift deletion, keeps probe chains intact without tombstones
+    private void removeEdge(int slot) {
+        edgeCount--;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & edgeMask;
+            if (edgeStamps[next] != stamp) {
+                break;
+            }
+
+            int home = hash(edgeKeys[next]) & edgeMask;
+            boolean stays = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (stays) {
+                continue;
+            }
+
+            edgeKeys[hole] = edgeKeys[next];
+            edgeNodes[hole] = edgeNodes[next];
+            hole = next;
+        }
+        edgeStamps[hole] = 0;
+    }
+
+    private void growEdges() {
+        long[] oldKeys = edgeKeys;
+        int[] oldNodes = edgeNodes;
+        int[] oldStamps = edgeStamps;
+        int oldStamp = stamp;
+
+        int capacity = oldKeys.length * 2;
+        edgeKeys = new long[capacity];
+        edgeNodes = new int[capacity];
+        edgeStamps = new int[capacity];
+        edgeMask = capacity - 1;
+        edgeCount = 0;
+        stamp = 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStamps[i] == oldStamp) {
+                putEdge(oldKeys[i], oldNodes[i]);
+            }
+        }
+    }
+
+    private static boolean fitsKey(int x, int y) {
+        return x == (short) x && y == (short) y;
+    }
+
+    // Both endpoints packed into 32 bits each, smallest first so the key ignores the edge's direction
+    private static long edgeKey(int x1, int y1, int x2, int y2) {
+        long a = ((long) (x1 & 0xFFFF) << 16) | (y1 & 0xFFFF);
+        long b = ((long) (x2 & 0xFFFF) << 16) | (y2 & 0xFFFF);
+        return a < b ? (a << 32) | b : (b << 32) | a;
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
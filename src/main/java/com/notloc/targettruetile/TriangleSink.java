@@ -0,0 +1,6 @@
+package com.notloc.targettruetile;
+
+// Receives the screen space triangles that survive occlusion culling
+interface TriangleSink {
+    void addTriangle(int x1, int y1, int x2, int y2, int x3, int y3);
+}
@@ -0,0 +1,67 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Client;
+import net.runelite.api.Perspective;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+// CameraSnapshot has to land every vertex on the same pixel as the client's own projection, which the tiles use
+public class CameraSnapshotTest {
+    private static final int CAMERAS = 2000;
+    private static final int VERTICES = 64;
+
+    @Test
+    public void projectMatchesModelToCanvas() {
+        Random random = new Random(13);
+        Map<String, Object> values = Fixtures.clientValues(Fixtures.worldView(), 1000);
+        Client client = StandIn.of(Client.class, values);
+        CameraSnapshot camera = new CameraSnapshot();
+
+        float[] x3d = new float[VERTICES];
+        float[] y3d = new float[VERTICES];
+        float[] z3d = new float[VERTICES];
+        int[] expectedX = new int[VERTICES];
+        int[] expectedY = new int[VERTICES];
+        int[] actualX = new int[VERTICES];
+        int[] actualY = new int[VERTICES];
+
+        for (int c = 0; c < CAMERAS; c++) {
+            // Cameras from right next to the model, where vertices fall behind the near plane, out to a distance
+            int distance = 100 + random.nextInt(3000);
+            double yaw = random.nextDouble() * 2 * Math.PI;
+            double pitch = (128 + random.nextInt(384)) * Perspective.UNIT;
+            values.put("getCameraFpX", Fixtures.LOCAL_X - Math.sin(yaw) * distance + random.nextDouble());
+            values.put("getCameraFpY", Fixtures.LOCAL_Y - Math.cos(yaw) * distance + random.nextDouble());
+            values.put("getCameraFpZ", Fixtures.LOCAL_Z - distance * Math.sin(pitch) + random.nextDouble());
+            values.put("getCameraFpYaw", yaw);
+            values.put("getCameraFpPitch", pitch);
+            values.put("getScale", 200 + random.nextInt(1300));
+            values.put("getViewportXOffset", random.nextInt(8));
+            values.put("getViewportYOffset", random.nextInt(8));
+            values.put("getViewportWidth", 300 + random.nextInt(1300));
+            values.put("getViewportHeight", 200 + random.nextInt(900));
+
+            for (int i = 0; i < VERTICES; i++) {
+                x3d[i] = random.nextInt(512) - 256;
+                y3d[i] = -random.nextInt(512);
+                z3d[i] = random.nextInt(512) - 256;
+            }
+            int localX = Fixtures.LOCAL_X + random.nextInt(256) - 128;
+            int localY = Fixtures.LOCAL_Y + random.nextInt(256) - 128;
+            int localZ = Fixtures.LOCAL_Z - random.nextInt(128);
+            int rotation = random.nextBoolean() ? 0 : random.nextInt(2048);
+
+            // The client takes the model's axes in x, z, y order
+            Perspective.modelToCanvas(client, VERTICES, localX, localY, localZ, rotation, x3d, z3d, y3d, expectedX, expectedY);
+            camera.capture(client);
+            camera.project(VERTICES, localX, localY, localZ, rotation, x3d, y3d, z3d, actualX, actualY);
+
+            assertArrayEquals("x of camera " + c, expectedX, actualX);
+            assertArrayEquals("y of camera " + c, expectedY, actualY);
+        }
+    }
+}
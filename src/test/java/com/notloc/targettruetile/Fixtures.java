@@ -0,0 +1,192 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.AABB;
+import net.runelite.api.Actor;
+import net.runelite.api.Client;
+import net.runelite.api.Model;
+import net.runelite.api.Perspective;
+import net.runelite.api.WorldView;
+import net.runelite.api.coords.LocalPoint;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Synthetic scene pieces shared by the benchmarks and the headless harness.
+// A fixed camera looks down at a cylinder shaped model standing in the middle of the viewport.
+final class Fixtures {
+    static final int VIEWPORT_WIDTH = 765;
+    static final int VIEWPORT_HEIGHT = 503;
+
+    static final int LOCAL_X = 52 * 128 + 64;
+    static final int LOCAL_Y = 52 * 128 + 64;
+    static final int LOCAL_Z = 0;
+
+    private static final int MODEL_RADIUS = 96;
+    private static final int MODEL_HEIGHT = 256;
+    private static final int MODEL_COLUMNS = 32;
+
+    private static final int TILE_SIZE_PX = 48;
+
+    private Fixtures() {}
+
+    static WorldView worldView() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("getId", -1);
+        values.put("getPlane", 0);
+        values.put("isTopLevel", true);
+        return StandIn.of(WorldView.class, values);
+    }
+
+    static Client client(WorldView worldView) {
+        return StandIn.of(Client.class, clientValues(worldView, 1000));
+    }
+
+    // Client values for a camera the given distance south of and above the model, looking back at it
+    static Map<String, Object> clientValues(WorldView worldView, int distance) {
+        final int cameraX = LOCAL_X;
+        final int cameraY = LOCAL_Y - distance;
+        final int cameraZ = LOCAL_Z - MODEL_HEIGHT / 2 - distance;
+        final int pitch = 256;
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("getTopLevelWorldView", worldView);
+        values.put("isGpu", true);
+        values.put("getViewportXOffset", 0);
+        values.put("getViewportYOffset", 0);
+        values.put("getViewportWidth", VIEWPORT_WIDTH);
+        values.put("getViewportHeight", VIEWPORT_HEIGHT);
+        values.put("getScale", 512);
+        values.put("getCameraX", cameraX);
+        values.put("getCameraY", cameraY);
+        values.put("getCameraZ", cameraZ);
+        values.put("getCameraPitch", pitch);
+        values.put("getCameraYaw", 0);
+        values.put("getCameraFpX", (double) cameraX);
+        values.put("getCameraFpY", (double) cameraY);
+        values.put("getCameraFpZ", (double) cameraZ);
+        values.put("getCameraFpPitch", pitch * Math.PI / 1024);
+        values.put("getCameraFpYaw", 0.0);
+        return values;
+    }
+
+    // A cylinder of quads split into triangles, roughly faceCount faces in total.
+    static Model model(int faceCount) {
+        int rows = Math.max(1, faceCount / (2 * MODEL_COLUMNS));
+        int vCount = (rows + 1) * MODEL_COLUMNS;
+        int tCount = rows * MODEL_COLUMNS * 2;
+
+        float[] x = new float[vCount];
+        float[] y = new float[vCount];
+        float[] z = new float[vCount];
+        for (int r = 0; r <= rows; r++) {
+            for (int c = 0; c < MODEL_COLUMNS; c++) {
+                double angle = 2 * Math.PI * c / MODEL_COLUMNS;
+                int v = r * MODEL_COLUMNS + c;
+                x[v] = (float) (Math.cos(angle) * MODEL_RADIUS);
+                z[v] = (float) (Math.sin(angle) * MODEL_RADIUS);
+                y[v] = -(float) MODEL_HEIGHT * r / rows;
+            }
+        }
+
+        int[] f1 = new int[tCount];
+        int[] f2 = new int[tCount];
+        int[] f3 = new int[tCount];
+        int t = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < MODEL_COLUMNS; c++) {
+                int a = r * MODEL_COLUMNS + c;
+                int b = r * MODEL_COLUMNS + (c + 1) % MODEL_COLUMNS;
+                int d = a + MODEL_COLUMNS;
+                int e = b + MODEL_COLUMNS;
+                f1[t] = a; f2[t] = b; f3[t] = e; t++;
+                f1[t] = a; f2[t] = e; f3[t] = d; t++;
+            }
+        }
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("getVerticesCount", vCount);
+        values.put("getVerticesX", x);
+        values.put("getVerticesY", y);
+        values.put("getVerticesZ", z);
+        values.put("getFaceCount", tCount);
+        values.put("getFaceIndices1", f1);
+        values.put("getFaceIndices2", f2);
+        values.put("getFaceIndices3", f3);
+        // A cylinder's box doesn't change as it turns
+        values.put("getAABB", aabb(0, -MODEL_HEIGHT / 2, 0, MODEL_RADIUS, MODEL_HEIGHT / 2, MODEL_RADIUS));
+        return StandIn.of(Model.class, values);
+    }
+
+    // A model space bounding box given by its centre and half extents, y is up
+    static AABB aabb(int centerX, int centerY, int centerZ, int extremeX, int extremeY, int extremeZ) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("getCenterX", centerX);
+        values.put("getCenterY", centerY);
+        values.put("getCenterZ", centerZ);
+        values.put("getExtremeX", extremeX);
+        values.put("getExtremeY", extremeY);
+        values.put("getExtremeZ", extremeZ);
+        return StandIn.of(AABB.class, values);
+    }
+
+    static Actor actor(WorldView worldView, Model model) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("getModel", model);
+        values.put("getLocalLocation", new LocalPoint(LOCAL_X, LOCAL_Y, worldView));
+        values.put("getCurrentOrientation", 0);
+        return StandIn.of(Actor.class, values);
+    }
+
+    // Screen space tile quads laid out in a grid around the centre of the viewport
+    static List<Polygon> tilePolygons(int count) {
+        int columns = (int) Math.ceil(Math.sqrt(count));
+        int rows = (count + columns - 1) / columns;
+        int originX = VIEWPORT_WIDTH / 2 - columns * TILE_SIZE_PX / 2;
+        int originY = VIEWPORT_HEIGHT / 2 - rows * TILE_SIZE_PX / 2;
+
+        List<Polygon> polygons = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int x = originX + (i % columns) * TILE_SIZE_PX;
+            int y = originY + (i / columns) * TILE_SIZE_PX;
+            polygons.add(new Polygon(
+                    new int[]{x, x + TILE_SIZE_PX, x + TILE_SIZE_PX, x},
+                    new int[]{y, y, y + TILE_SIZE_PX, y + TILE_SIZE_PX},
+                    4
+            ));
+        }
+        return polygons;
+    }
+
+    // Projects the model and returns its camera facing triangles, packed as x1,y1,x2,y2,x3,y3
+    static int[] frontFacingTriangles(Client client, Model model) {
+        int vCount = model.getVerticesCount();
+        int[] x2d = new int[vCount];
+        int[] y2d = new int[vCount];
+        Perspective.modelToCanvas(client, vCount, LOCAL_X, LOCAL_Y, LOCAL_Z, 0,
+                model.getVerticesX(), model.getVerticesZ(), model.getVerticesY(), x2d, y2d);
+
+        int tCount = model.getFaceCount();
+        int[] tx = model.getFaceIndices1();
+        int[] ty = model.getFaceIndices2();
+        int[] tz = model.getFaceIndices3();
+
+        int[] tris = new int[tCount * 6];
+        int n = 0;
+        for (int i = 0; i < tCount; i++) {
+            int x1 = x2d[tx[i]], y1 = y2d[tx[i]];
+            int x2 = x2d[ty[i]], y2 = y2d[ty[i]];
+            int x3 = x2d[tz[i]], y3 = y2d[tz[i]];
+            if ((x2 - x1) * (y3 - y1) - (y2 - y1) * (x3 - x1) >= 0) {
+                continue;
+            }
+            tris[n++] = x1; tris[n++] = y1;
+            tris[n++] = x2; tris[n++] = y2;
+            tris[n++] = x3; tris[n++] = y3;
+        }
+        return Arrays.copyOf(tris, n);
+    }
+}
@@ -0,0 +1,116 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.*;
+import net.runelite.api.coords.LocalPoint;
+import net.runelite.api.coords.WorldPoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Stand-in world for the headless overlay harness.
+// The local player stands in the middle of a flat scene with NPCs around it on a square grid of tiles,
+// each NPC with a model of a size found in game, from small critters up to bosses.
+final class HeadlessScene {
+    static final String NPC_NAME = "Harness npc";
+
+    private static final int BASE_X = 3200;
+    private static final int BASE_Y = 3200;
+    private static final int SCENE_SIZE = 104;
+    private static final int EXTENDED_SCENE_SIZE = 184;
+    private static final int NPC_SPACING = 2; // tiles
+    private static final int CAMERA_DISTANCE = 2400;
+    private static final int[] MODEL_FACES = {600, 1500, 3000, 6000};
+    private static final int PLAYER_FACES = 2000;
+
+    final Client client;
+    final WorldView worldView;
+    final Player player;
+    final List<NPC> npcs;
+
+    HeadlessScene(int npcCount) {
+        Map<String, Object> sceneValues = new HashMap<>();
+        sceneValues.put("getTileHeights", new int[4][EXTENDED_SCENE_SIZE + 1][EXTENDED_SCENE_SIZE + 1]);
+        sceneValues.put("getTileSettings", new byte[4][SCENE_SIZE][SCENE_SIZE]);
+        sceneValues.put("getExtendedTileSettings", new byte[4][EXTENDED_SCENE_SIZE][EXTENDED_SCENE_SIZE]);
+        sceneValues.put("getBaseX", BASE_X);
+        sceneValues.put("getBaseY", BASE_Y);
+        Scene scene = StandIn.of(Scene.class, sceneValues);
+
+        Map<String, Object> worldViewValues = new HashMap<>();
+        worldViewValues.put("getId", -1);
+        worldViewValues.put("getPlane", 0);
+        worldViewValues.put("isTopLevel", true);
+        worldViewValues.put("getScene", scene);
+        worldViewValues.put("getBaseX", BASE_X);
+        worldViewValues.put("getBaseY", BASE_Y);
+        worldViewValues.put("getSizeX", SCENE_SIZE);
+        worldViewValues.put("getSizeY", SCENE_SIZE);
+        worldView = StandIn.of(WorldView.class, worldViewValues);
+
+        List<Model> models = new ArrayList<>();
+        for (int faces : MODEL_FACES) {
+            models.add(Fixtures.model(faces));
+        }
+
+        // Fill the grid outwards from the player, skipping the player's own tile
+        int centre = Fixtures.LOCAL_X / 128;
+        List<NPC> npcs = new ArrayList<>(npcCount);
+        for (int ring = 1; npcs.size() < npcCount; ring++) {
+            for (int dy = -ring; dy <= ring && npcs.size() < npcCount; dy++) {
+                for (int dx = -ring; dx <= ring && npcs.size() < npcCount; dx++) {
+                    if (Math.max(Math.abs(dx), Math.abs(dy)) != ring) {
+                        continue;
+                    }
+                    int index = npcs.size();
+                    npcs.add(npc(index, centre + dx * NPC_SPACING, centre + dy * NPC_SPACING, models.get(index % models.size())));
+                }
+            }
+        }
+        this.npcs = Collections.unmodifiableList(npcs);
+
+        Map<String, Object> playerValues = new HashMap<>();
+        playerValues.put("getName", "Harness player");
+        playerValues.put("getModel", Fixtures.model(PLAYER_FACES));
+        playerValues.put("getLocalLocation", new LocalPoint(Fixtures.LOCAL_X, Fixtures.LOCAL_Y, worldView));
+        playerValues.put("getWorldLocation", new WorldPoint(BASE_X + centre, BASE_Y + centre, 0));
+        playerValues.put("getFootprintSize", 1);
+        playerValues.put("getWorldView", worldView);
+        player = StandIn.of(Player.class, playerValues);
+
+        Map<String, Object> menuValues = new HashMap<>();
+        menuValues.put("getMenuEntries", new MenuEntry[0]);
+        Menu menu = StandIn.of(Menu.class, menuValues);
+
+        Map<String, Object> clientValues = Fixtures.clientValues(worldView, CAMERA_DISTANCE);
+        clientValues.put("isGpu", true);
+        clientValues.put("getGameState", GameState.LOGGED_IN);
+        clientValues.put("getWorldView", worldView);
+        clientValues.put("getLocalPlayer", player);
+        clientValues.put("getMenu", menu);
+        clientValues.put("getPlane", 0);
+        client = StandIn.of(Client.class, clientValues);
+    }
+
+    private NPC npc(int index, int sceneX, int sceneY, Model model) {
+        Map<String, Object> compositionValues = new HashMap<>();
+        compositionValues.put("getName", NPC_NAME);
+        compositionValues.put("getSize", 1);
+        compositionValues.put("getFootprintSize", 1);
+        compositionValues.put("getActions", new String[]{null, "Attack", null, null, null});
+        NPCComposition composition = StandIn.of(NPCComposition.class, compositionValues);
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("getIndex", index);
+        values.put("getName", NPC_NAME);
+        values.put("getComposition", composition);
+        values.put("getModel", model);
+        values.put("getLocalLocation", new LocalPoint(sceneX * 128 + 64, sceneY * 128 + 64, worldView));
+        values.put("getWorldLocation", new WorldPoint(BASE_X + sceneX, BASE_Y + sceneY, 0));
+        values.put("getCurrentOrientation", (index * 256) % 2048);
+        values.put("getWorldView", worldView);
+        return StandIn.of(NPC.class, values);
+    }
+}
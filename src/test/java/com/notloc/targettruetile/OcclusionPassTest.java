@@ -0,0 +1,150 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Actor;
+import net.runelite.api.Client;
+import net.runelite.api.Model;
+import net.runelite.api.WorldView;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OcclusionPassTest {
+    private static final BasicStroke BORDER = new BasicStroke(8);
+
+    // An actor crossing the edge of a tile has to be cleared from the outer half of the tile's border too, in every mode
+    @Test
+    public void clearsUnderTheBorderOutsideTheTile() {
+        WorldView worldView = Fixtures.worldView();
+        Client client = Fixtures.client(worldView);
+        Model model = Fixtures.model(2000);
+        Actor actor = Fixtures.actor(worldView, model);
+
+        int[] triangles = Fixtures.frontFacingTriangles(client, model);
+        int left = Integer.MAX_VALUE, right = Integer.MIN_VALUE, top = Integer.MAX_VALUE, bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < triangles.length; i += 2) {
+            left = Math.min(left, triangles[i]);
+            right = Math.max(right, triangles[i]);
+            top = Math.min(top, triangles[i + 1]);
+            bottom = Math.max(bottom, triangles[i + 1]);
+        }
+        int middleX = (left + right) / 2;
+        int middleY = (top + bottom) / 2;
+
+        // The tile's right edge runs down the middle of the model
+        Polygon tile = new Polygon(
+                new int[]{left - 20, middleX, middleX, left - 20},
+                new int[]{middleY - 10, middleY - 10, middleY + 10, middleY + 10},
+                4
+        );
+
+        for (OcclusionMode mode : OcclusionMode.values()) {
+            BufferedImage image = new BufferedImage(Fixtures.VIEWPORT_WIDTH, Fixtures.VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = image.createGraphics();
+            graphics.setColor(Color.RED);
+            graphics.setStroke(BORDER);
+            graphics.draw(tile);
+
+            FilterIndex filter = new FilterIndex();
+            filter.build(Collections.singletonList(tile), BORDER);
+            OcclusionPass pass = new OcclusionPass();
+            pass.begin(1, filter, mode);
+            pass.add(client, actor, Fixtures.LOCAL_Z);
+            pass.run(client, graphics);
+            graphics.dispose();
+
+            assertEquals(mode + " inside the tile", 0, image.getRGB(middleX - 3, middleY) >>> 24);
+            assertEquals(mode + " outside the tile", 0, image.getRGB(middleX + 3, middleY) >>> 24);
+        }
+    }
+
+    // Bounds that miss every tile skip the actor before any vertex is projected
+    @Test
+    public void skipsActorsWhoseBoundsMissTheTiles() {
+        WorldView worldView = Fixtures.worldView();
+        Client client = Fixtures.client(worldView);
+        Actor actor = Fixtures.actor(worldView, Fixtures.model(2000));
+
+        Polygon corner = new Polygon(new int[]{0, 20, 20, 0}, new int[]{0, 0, 20, 20}, 4);
+        OcclusionPass pass = run(client, actor, corner, new BufferedImage(Fixtures.VIEWPORT_WIDTH, Fixtures.VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_ARGB));
+        assertTrue(boundsKnown(pass, actor));
+        assertEquals(1, pass.getTotals().getActorsSkipped());
+        assertEquals(0, pass.getTotals().getTrianglesProjected());
+
+        pass = run(client, actor, viewport(), new BufferedImage(Fixtures.VIEWPORT_WIDTH, Fixtures.VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_ARGB));
+        assertEquals(0, pass.getTotals().getActorsSkipped());
+        assertTrue(pass.getTotals().getTrianglesProjected() > 0);
+    }
+
+    // With the camera inside the box some corners fall behind it, the bounds stay unknown and the actor is still cleared
+    @Test
+    public void clearsWhenTheBoundsReachBehindTheCamera() {
+        WorldView worldView = Fixtures.worldView();
+        Client client = StandIn.of(Client.class, Fixtures.clientValues(worldView, 120));
+        Model model = Fixtures.model(2000);
+        Actor actor = Fixtures.actor(worldView, model);
+
+        BufferedImage image = new BufferedImage(Fixtures.VIEWPORT_WIDTH, Fixtures.VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        OcclusionPass pass = run(client, actor, viewport(), image);
+        assertFalse(boundsKnown(pass, actor));
+        assertEquals(0, pass.getTotals().getActorsSkipped());
+
+        // The middle of the largest triangle in front of the camera
+        int[] triangles = Fixtures.frontFacingTriangles(client, model);
+        int largest = -1;
+        long largestArea = 0;
+        for (int i = 0; i < triangles.length; i += 6) {
+            boolean onScreen = true;
+            for (int j = i; j < i + 6; j += 2) {
+                onScreen &= triangles[j] >= 0 && triangles[j] < Fixtures.VIEWPORT_WIDTH
+                        && triangles[j + 1] >= 0 && triangles[j + 1] < Fixtures.VIEWPORT_HEIGHT;
+            }
+            long area = Math.abs((long) (triangles[i + 2] - triangles[i]) * (triangles[i + 5] - triangles[i + 1])
+                    - (long) (triangles[i + 3] - triangles[i + 1]) * (triangles[i + 4] - triangles[i]));
+            if (onScreen && area > largestArea) {
+                largest = i;
+                largestArea = area;
+            }
+        }
+        assertTrue(largest >= 0);
+        int x = (triangles[largest] + triangles[largest + 2] + triangles[largest + 4]) / 3;
+        int y = (triangles[largest + 1] + triangles[largest + 3] + triangles[largest + 5]) / 3;
+        assertEquals(0, image.getRGB(x, y) >>> 24);
+    }
+
+    // Draws the tile, then clears under the actor in polygon mode
+    private static OcclusionPass run(Client client, Actor actor, Polygon tile, BufferedImage image) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fill(tile);
+
+        FilterIndex filter = new FilterIndex();
+        filter.build(Collections.singletonList(tile));
+        OcclusionPass pass = new OcclusionPass();
+        pass.begin(1, filter, OcclusionMode.POLYGON);
+        pass.add(client, actor, Fixtures.LOCAL_Z);
+        pass.run(client, graphics);
+        graphics.dispose();
+        return pass;
+    }
+
+    private static Polygon viewport() {
+        return new Polygon(
+                new int[]{0, Fixtures.VIEWPORT_WIDTH, Fixtures.VIEWPORT_WIDTH, 0},
+                new int[]{0, 0, Fixtures.VIEWPORT_HEIGHT, Fixtures.VIEWPORT_HEIGHT},
+                4
+        );
+    }
+
+    // The cache hands an entry out once per frame, so the next frame is started to look at it
+    private static boolean boundsKnown(OcclusionPass pass, Actor actor) {
+        ActorProjectionCache cache = pass.getCache();
+        cache.beginFrame(cache.getCameraVersion());
+        return cache.get(actor).isBoundsKnown();
+    }
+}
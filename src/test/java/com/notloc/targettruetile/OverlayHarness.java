@@ -0,0 +1,150 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Client;
+import net.runelite.api.events.NpcSpawned;
+import net.runelite.client.events.ConfigChanged;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+// Drives the plugin's event handlers over a HeadlessScene and times TargetTrueTileOverlay.render into an offscreen image.
+// Run main() to print the figures in the format of overlay-baseline.properties.
+final class OverlayHarness {
+    static final int[] NPC_COUNTS = {1, 10, 50, 100, 200};
+
+    private static final int WARMUP_FRAMES = 300;
+    private static final int MEASURED_FRAMES = 300;
+
+    private OverlayHarness() {}
+
+    static final class Result {
+        final int npcs;
+        final long p50Nanos;
+        final long p99Nanos;
+        final long bytesPerFrame; // -1 when the JVM can't measure allocation
+
+        private Result(int npcs, long p50Nanos, long p99Nanos, long bytesPerFrame) {
+            this.npcs = npcs;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.bytesPerFrame = bytesPerFrame;
+        }
+    }
+
+    static Result run(int npcCount) throws ReflectiveOperationException {
+        // The full workload is measured, a frame budget would hide regressions by cutting back
+        return run(npcCount, Collections.singletonMap("frameBudget", 0));
+    }
+
+    static Result run(int npcCount, Map<String, Object> configValues) throws ReflectiveOperationException {
+        HeadlessScene scene = new HeadlessScene(npcCount);
+        Rig rig = new Rig(scene.client, configValues);
+        // Tags the NPCs by name, as if listed in NPC Indicators
+        inject(rig.plugin, "taggedNames", new TagMatcher(Collections.singletonList(HeadlessScene.NPC_NAME)));
+
+        for (int i = 0; i < scene.npcs.size(); i++) {
+            rig.plugin.onNpcSpawned(new NpcSpawned(scene.npcs.get(i)));
+        }
+
+        try {
+            for (int i = 0; i < WARMUP_FRAMES; i++) {
+                rig.frame();
+            }
+
+            long[] samples = new long[MEASURED_FRAMES];
+            long allocatedBefore = allocatedBytes();
+            for (int i = 0; i < MEASURED_FRAMES; i++) {
+                samples[i] = rig.frame();
+            }
+            long allocatedAfter = allocatedBytes();
+
+            Arrays.sort(samples);
+            long bytesPerFrame = allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / MEASURED_FRAMES;
+            return new Result(npcCount, samples[MEASURED_FRAMES / 2], samples[MEASURED_FRAMES * 99 / 100], bytesPerFrame);
+        } finally {
+            rig.dispose();
+        }
+    }
+
+    // The plugin and its overlay around a stand-in client, rendering into an offscreen image.
+    // Guice normally wires these, here the fields are filled in directly.
+    static final class Rig {
+        final TargetTrueTilePlugin plugin = new TargetTrueTilePlugin();
+        final TargetTrueTileOverlay overlay;
+        private final Graphics2D graphics;
+
+        Rig(Client client, Map<String, Object> configValues) throws ReflectiveOperationException {
+            TargetTrueTileConfig config = StandIn.withDefaults(TargetTrueTileConfig.class, configValues);
+            overlay = construct(TargetTrueTileOverlay.class, client, plugin);
+            inject(plugin, "client", client);
+            inject(plugin, "config", config);
+            inject(plugin, "overlay", overlay);
+
+            // Loads the render style from the config
+            ConfigChanged configChanged = new ConfigChanged();
+            configChanged.setGroup(TargetTrueTileConfig.CONFIG_GROUP);
+            configChanged.setKey("improvedtiles");
+            plugin.onConfigChanged(configChanged);
+
+            BufferedImage image = new BufferedImage(Fixtures.VIEWPORT_WIDTH, Fixtures.VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+            graphics = image.createGraphics();
+        }
+
+        // Clears the image like the client does between frames, only the render itself is timed
+        long frame() {
+            Composite composite = graphics.getComposite();
+            graphics.setComposite(AlphaComposite.Clear);
+            graphics.fillRect(0, 0, Fixtures.VIEWPORT_WIDTH, Fixtures.VIEWPORT_HEIGHT);
+            graphics.setComposite(composite);
+
+            long start = System.nanoTime();
+            overlay.render(graphics);
+            return System.nanoTime() - start;
+        }
+
+        void dispose() {
+            graphics.dispose();
+        }
+    }
+
+    // Allocation is only measured on the calling thread, work done on the common pool is not included
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static void inject(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static <T> T construct(Class<T> type, Object... args) throws ReflectiveOperationException {
+        Constructor<?> constructor = type.getDeclaredConstructors()[0];
+        constructor.setAccessible(true);
+        return type.cast(constructor.newInstance(args));
+    }
+
+    public static void main(String[] args) throws ReflectiveOperationException {
+        System.out.println("# npcs: p50 us, p99 us, bytes per frame");
+        for (int npcs : NPC_COUNTS) {
+            Result result = run(npcs);
+            System.out.printf("# %d: %d, %d, %d%n", npcs, result.p50Nanos / 1000, result.p99Nanos / 1000, result.bytesPerFrame);
+            System.out.printf("frameMicros.%d=%d%n", npcs, result.p50Nanos / 1000);
+            System.out.printf("allocBytes.%d=%d%n", npcs, Math.max(0, result.bytesPerFrame));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.notloc.targettruetile;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+// Fails when the overlay's median frame time or allocation per frame regresses past the checked-in baseline.
+// Left out of ./gradlew test, frame times depend on the machine, run it with ./gradlew overlayPerformance.
+// Margins can be overridden with -Dharness.margin and -Dharness.allocMargin, ./gradlew harness prints a new baseline.
+public class OverlayPerformanceTest {
+    private static final String BASELINE = "/overlay-baseline.properties";
+
+    @Test
+    public void renderStaysWithinBaseline() throws Exception {
+        Properties baseline = new Properties();
+        try (InputStream in = OverlayPerformanceTest.class.getResourceAsStream(BASELINE)) {
+            assertNotNull("Missing " + BASELINE, in);
+            baseline.load(in);
+        }
+
+        double timeMargin = Double.parseDouble(System.getProperty("harness.margin", baseline.getProperty("margin.time", "0.5")));
+        long allocMargin = Long.parseLong(System.getProperty("harness.allocMargin", baseline.getProperty("margin.allocBytes", "4096")));
+
+        List<String> regressions = new ArrayList<>();
+        for (int npcs : OverlayHarness.NPC_COUNTS) {
+            OverlayHarness.Result result = OverlayHarness.run(npcs);
+
+            String frameMicros = baseline.getProperty("frameMicros." + npcs);
+            String allocBytes = baseline.getProperty("allocBytes." + npcs);
+            assertNotNull("No frameMicros." + npcs + " in " + BASELINE, frameMicros);
+            assertNotNull("No allocBytes." + npcs + " in " + BASELINE, allocBytes);
+
+            long actualMicros = result.p50Nanos / 1000;
+            if (actualMicros > (long) (Long.parseLong(frameMicros) * (1 + timeMargin))) {
+                regressions.add(String.format("%d npcs: %d us per frame, baseline %s us", npcs, actualMicros, frameMicros));
+            }
+
+            if (result.bytesPerFrame >= 0 && result.bytesPerFrame > Long.parseLong(allocBytes) + allocMargin) {
+                regressions.add(String.format("%d npcs: %d bytes per frame, baseline %s bytes", npcs, result.bytesPerFrame, allocBytes));
+            }
+        }
+
+        assertTrue("Overlay render regressed:\n" + String.join("\n", regressions), regressions.isEmpty());
+    }
+}
@@ -0,0 +1,117 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Client;
+import net.runelite.api.Perspective;
+import net.runelite.api.Point;
+import net.runelite.api.Scene;
+import net.runelite.api.coords.LocalPoint;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// projectTile has to land on the same pixels as the client's own tile outline and as the mark it replaced,
+// on uneven ground with bridges and with tiles reaching behind the camera
+public class PerspectiveUtilTest {
+    private static final int TILES = 20000;
+    private static final int SCENE_OFFSET = 40;
+    private static final int EXTENDED_SCENE_SIZE = 184;
+
+    @Test
+    public void projectTileMatchesTheClientAndTheOldMark() {
+        Random random = new Random(20);
+        HeadlessScene headless = new HeadlessScene(0);
+        Client client = headless.client;
+        Scene scene = headless.worldView.getScene();
+
+        int[][][] tileHeights = scene.getTileHeights();
+        for (int[][] plane : tileHeights) {
+            for (int[] column : plane) {
+                for (int y = 0; y < column.length; y++) {
+                    column[y] = -random.nextInt(800);
+                }
+            }
+        }
+        byte[][] bridges = scene.getExtendedTileSettings()[1];
+        for (byte[] column : bridges) {
+            for (int y = 0; y < column.length; y++) {
+                column[y] = (byte) (random.nextInt(8) == 0 ? 2 : 0);
+            }
+        }
+
+        TileHeightCache heights = new TileHeightCache();
+        heights.update(client, headless.worldView);
+        TileGeometry geometry = new TileGeometry();
+
+        int projected = 0;
+        int behindCamera = 0;
+        for (int i = 0; i < TILES; i++) {
+            int size = 1 + random.nextInt(5);
+            int sceneX = random.nextInt(EXTENDED_SCENE_SIZE) - SCENE_OFFSET;
+            int sceneY = random.nextInt(EXTENDED_SCENE_SIZE) - SCENE_OFFSET;
+            // Even sizes are centred on a tile corner
+            int centre = size % 2 == 1 ? 64 : 0;
+            LocalPoint point = new LocalPoint(sceneX * 128 + centre, sceneY * 128 + centre, headless.worldView);
+            int markLength = random.nextInt(size * 128 + 1);
+
+            PerspectiveUtil.projectTile(client, heights, point, size, markLength, geometry);
+
+            Polygon expectedTile = Perspective.getCanvasTileAreaPoly(client, point, size);
+            assertSamePolygon(expectedTile, geometry.getTilePoly());
+            assertSamePolygon(oldMark(client, heights, point, size, markLength), geometry.getMarkPoly());
+
+            if (expectedTile != null) {
+                projected++;
+            } else {
+                behindCamera++;
+            }
+        }
+        assertTrue(projected > TILES / 4);
+        assertTrue(behindCamera > TILES / 10);
+    }
+
+    private static void assertSamePolygon(Polygon expected, Polygon actual) {
+        if (expected == null) {
+            assertEquals(null, actual);
+            return;
+        }
+        assertEquals(expected.npoints, actual.npoints);
+        for (int i = 0; i < expected.npoints; i++) {
+            assertArrayEquals(new int[]{expected.xpoints[i], expected.ypoints[i]}, new int[]{actual.xpoints[i], actual.ypoints[i]});
+        }
+    }
+
+    // The southwest mark as it was projected before projectTile, one localToCanvas call per point
+    private static Polygon oldMark(Client client, TileHeightCache heights, LocalPoint localLocation, int size, int length_128) {
+        if (!heights.contains(localLocation.getX(), localLocation.getY())) {
+            return null;
+        }
+        int tilePlane = heights.getTilePlane(localLocation.getX(), localLocation.getY(), client.getTopLevelWorldView().getPlane());
+
+        int swX = localLocation.getX() - size * 128 / 2;
+        int swY = localLocation.getY() - size * 128 / 2;
+        int neX = localLocation.getX() + size * 128 / 2;
+        int neY = localLocation.getY() + size * 128 / 2;
+        int swHeight = heights.getHeight(swX, swY, tilePlane);
+        int seHeight = heights.getHeight(neX, swY, tilePlane);
+        int nwHeight = heights.getHeight(swX, neY, tilePlane);
+
+        float t = length_128 / size / 128f;
+        Point p1 = Perspective.localToCanvas(client, swX, swY, swHeight);
+        Point p2 = Perspective.localToCanvas(client, swX + length_128, swY, swHeight + (int) ((seHeight - swHeight) * t));
+        Point p3 = Perspective.localToCanvas(client, swX, swY + length_128, swHeight + (int) ((nwHeight - swHeight) * t));
+        if (p1 == null || p2 == null || p3 == null) {
+            return null;
+        }
+
+        Polygon poly = new Polygon();
+        poly.addPoint(p1.getX(), p1.getY());
+        poly.addPoint(p2.getX(), p2.getY());
+        poly.addPoint(p3.getX(), p3.getY());
+        return poly;
+    }
+}
@@ -0,0 +1,170 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.Actor;
+import net.runelite.api.Model;
+import net.runelite.api.NPC;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Captures written by SceneRecorder and played back through SceneReplay
+public class SceneRecorderTest {
+    private static final int FRAMES = 20;
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("scene-capture");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    // The models are rewritten in place every frame like the client's own buffers, so most shapes arrive as deltas
+    @Test
+    public void replayEndsOnTheRecordedShapesAndFlags() throws IOException, ReflectiveOperationException {
+        HeadlessScene scene = new HeadlessScene(4);
+        Path path = directory.resolve("capture.bin");
+
+        try (SceneRecorder recorder = new SceneRecorder(path)) {
+            for (int frame = 0; frame < FRAMES; frame++) {
+                recorder.tick(frame);
+                moveVertices(scene.player.getModel(), frame);
+                for (NPC npc : scene.npcs) {
+                    moveVertices(npc.getModel(), frame);
+                }
+
+                recorder.beginFrame(scene.client, scene.worldView);
+                recorder.addActor(scene.player, -1, SceneRecorder.FLAG_PLAYER, 1, 1);
+                // The target moves to another NPC on the last frame, the replay has to end on it
+                boolean last = frame == FRAMES - 1;
+                recordNpc(recorder, scene.npcs.get(0), last ? SceneRecorder.FLAG_TARGET | SceneRecorder.FLAG_ATTACKABLE : SceneRecorder.FLAG_ATTACKABLE);
+                recordNpc(recorder, scene.npcs.get(1), last ? SceneRecorder.FLAG_REMEMBERED : SceneRecorder.FLAG_TARGET);
+                recordNpc(recorder, scene.npcs.get(2), SceneRecorder.FLAG_TAGGED | SceneRecorder.FLAG_HOVERED);
+                recordNpc(recorder, scene.npcs.get(3), 0);
+                recorder.endFrame();
+            }
+        }
+
+        // Each model in full once, every later shape as a delta
+        ByteBuffer capture = ByteBuffer.wrap(Files.readAllBytes(path));
+        int models = scene.npcs.size() + 1;
+        assertEquals(models, countRecords(capture, SceneRecorder.RECORD_MODEL));
+        assertEquals(models * (FRAMES - 1), countRecords(capture, SceneRecorder.RECORD_MODEL_DELTA));
+
+        SceneReplay replay = new SceneReplay();
+        replay.play(capture);
+
+        assertSameShape(scene.player, replay.player());
+        for (NPC npc : scene.npcs) {
+            assertSameShape(npc, replay.npc(npc.getIndex()));
+        }
+
+        TargetTrueTilePlugin plugin = replay.plugin();
+        assertSame(replay.npc(0), plugin.getTarget());
+        assertSame(replay.npc(2), plugin.getHoveredNpc());
+        assertTrue(plugin.getTargetMemory().getNpcs().contains(replay.npc(1)));
+        assertFalse(plugin.getTargetMemory().getNpcs().contains(replay.npc(0)));
+        assertTrue(plugin.getTaggedNpcs().contains(replay.npc(2)));
+        assertFalse(plugin.getTaggedNpcs().contains(replay.npc(3)));
+        replay.dispose();
+    }
+
+    @Test
+    public void closeReportsAFailedWrite() throws IOException, ReflectiveOperationException {
+        SceneRecorder recorder = new SceneRecorder(directory.resolve("capture.bin"));
+        Field channelField = SceneRecorder.class.getDeclaredField("channel");
+        channelField.setAccessible(true);
+        FileChannel channel = (FileChannel) channelField.get(recorder);
+        Field writerField = SceneRecorder.class.getDeclaredField("writer");
+        writerField.setAccessible(true);
+        Thread writer = (Thread) writerField.get(recorder);
+
+        // Every write from here on fails, the header's if it hasn't been written yet
+        channel.close();
+        try {
+            recorder.tick(1);
+        } catch (IOException e) {
+            // Already failing on the header, reported as soon as the next record is handed over
+        }
+
+        try {
+            recorder.close();
+            fail("close() didn't report the failed write");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertFalse(writer.isAlive());
+        assertFalse(channel.isOpen());
+    }
+
+    private static int countRecords(ByteBuffer capture, byte type) {
+        int count = 0;
+        capture.position(8);
+        while (capture.remaining() >= 5) {
+            if (capture.get() == type) {
+                count++;
+            }
+            int length = capture.getInt();
+            capture.position(capture.position() + length);
+        }
+        return count;
+    }
+
+    private static void recordNpc(SceneRecorder recorder, NPC npc, int flags) throws IOException {
+        recorder.addActor(npc, npc.getIndex(), flags, 1, 1);
+    }
+
+    // Every fourth vertex stays put, the others move along a single axis that changes from frame to frame
+    private static void moveVertices(Model model, int frame) {
+        float[] x = model.getVerticesX();
+        float[] y = model.getVerticesY();
+        float[] z = model.getVerticesZ();
+        for (int i = 0; i < model.getVerticesCount(); i++) {
+            if (i % 4 == 0) {
+                continue;
+            }
+            switch ((i + frame) % 3) {
+                case 0:
+                    x[i] += 1.5f;
+                    break;
+                case 1:
+                    y[i] -= 2;
+                    break;
+                default:
+                    z[i] += 0.25f;
+                    break;
+            }
+        }
+    }
+
+    private static void assertSameShape(Actor recorded, Actor replayed) {
+        Model expected = recorded.getModel();
+        Model actual = replayed.getModel();
+        assertArrayEquals(expected.getVerticesX(), actual.getVerticesX(), 0);
+        assertArrayEquals(expected.getVerticesY(), actual.getVerticesY(), 0);
+        assertArrayEquals(expected.getVerticesZ(), actual.getVerticesZ(), 0);
+        assertArrayEquals(expected.getFaceIndices1(), actual.getFaceIndices1());
+    }
+}
@@ -0,0 +1,338 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.*;
+import net.runelite.api.coords.LocalPoint;
+import net.runelite.api.coords.WorldPoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Plays a capture written by SceneRecorder back through the overlay, using stand-in client objects rebuilt from it.
+// Every recorded frame is rendered with the camera, actors and target set it was captured with, so a real
+// encounter can be profiled offline. Only the overlay's render is timed.
+final class SceneReplay {
+    private final Map<String, Object> sceneValues = new HashMap<>();
+    private final Map<String, Object> worldViewValues = new HashMap<>();
+    private final Map<String, Object> clientValues;
+
+    private final WorldView worldView;
+    private final OverlayHarness.Rig rig;
+
+    private final Map<Integer, Model> models = new HashMap<>();
+    private final Map<Integer, Map<String, Object>> modelValues = new HashMap<>();
+    private final Map<Integer, ReplayActor<NPC>> npcs = new HashMap<>();
+    private final ReplayActor<Player> player;
+
+    private long[] frameNanos = new long[1024];
+    private int frames;
+
+    // An actor whose stand-in answers from maps the replay rewrites each frame, so it keeps its identity
+    private static final class ReplayActor<T extends Actor> {
+        final Map<String, Object> values = new HashMap<>();
+        final Map<String, Object> compositionValues = new HashMap<>();
+        final T actor;
+
+        ReplayActor(Class<T> type, int index) {
+            values.put("getIndex", index);
+            values.put("getComposition", StandIn.of(NPCComposition.class, compositionValues));
+            actor = StandIn.of(type, values);
+        }
+    }
+
+    SceneReplay() throws ReflectiveOperationException {
+        sceneValues.put("getTileHeights", new int[4][0][0]);
+        sceneValues.put("getExtendedTileSettings", new byte[4][0][0]);
+        worldViewValues.put("getId", -1);
+        worldViewValues.put("isTopLevel", true);
+        worldViewValues.put("getScene", StandIn.of(Scene.class, sceneValues));
+        worldView = StandIn.of(WorldView.class, worldViewValues);
+
+        player = new ReplayActor<>(Player.class, -1);
+        player.values.put("getWorldView", worldView);
+
+        clientValues = Fixtures.clientValues(worldView, 0);
+        clientValues.put("getGameState", GameState.LOGGED_IN);
+        clientValues.put("getWorldView", worldView);
+        clientValues.put("getLocalPlayer", player.actor);
+        Client client = StandIn.of(Client.class, clientValues);
+
+        // Hover is always on, whether an NPC is hovered comes from the capture
+        Map<String, Object> configValues = new HashMap<>();
+        configValues.put("highlightOnHover", true);
+        rig = new OverlayHarness.Rig(client, configValues);
+    }
+
+    // Plays every record in the capture, starting from the beginning of the buffer
+    void play(ByteBuffer capture) throws ReflectiveOperationException {
+        capture.position(0);
+        if (capture.getInt() != SceneRecorder.MAGIC) {
+            throw new IllegalArgumentException("Not a scene capture");
+        }
+        int version = capture.getInt();
+        if (version != SceneRecorder.VERSION) {
+            throw new IllegalArgumentException("Unsupported scene capture version " + version);
+        }
+
+        frames = 0;
+        while (capture.remaining() >= 5) {
+            byte type = capture.get();
+            int end = capture.getInt();
+            end += capture.position();
+            switch (type) {
+                case SceneRecorder.RECORD_SCENE:
+                    readScene(capture);
+                    break;
+                case SceneRecorder.RECORD_MODEL:
+                    readModel(capture);
+                    break;
+                case SceneRecorder.RECORD_MODEL_DELTA:
+                    readModelDelta(capture);
+                    break;
+                case SceneRecorder.RECORD_TICK:
+                    clientValues.put("getTickCount", capture.getInt());
+                    break;
+                case SceneRecorder.RECORD_FRAME:
+                    readFrame(capture);
+                    if (frames == frameNanos.length) {
+                        frameNanos = Arrays.copyOf(frameNanos, frames * 2);
+                    }
+                    frameNanos[frames++] = rig.frame();
+                    break;
+                default:
+                    break;
+            }
+            capture.position(end);
+        }
+    }
+
+    // The stand-in an NPC index was replayed into, null if the capture never had it
+    NPC npc(int index) {
+        ReplayActor<NPC> npc = npcs.get(index);
+        return npc != null ? npc.actor : null;
+    }
+
+    Player player() {
+        return player.actor;
+    }
+
+    TargetTrueTilePlugin plugin() {
+        return rig.plugin;
+    }
+
+    void dispose() {
+        rig.dispose();
+    }
+
+    private void readScene(ByteBuffer in) {
+        int baseX = in.getInt();
+        int baseY = in.getInt();
+        worldViewValues.put("getBaseX", baseX);
+        worldViewValues.put("getBaseY", baseY);
+        worldViewValues.put("getPlane", in.getInt());
+        worldViewValues.put("getSizeX", in.getInt());
+        worldViewValues.put("getSizeY", in.getInt());
+        sceneValues.put("getBaseX", baseX);
+        sceneValues.put("getBaseY", baseY);
+
+        int[][][] heights = new int[in.getInt()][][];
+        for (int p = 0; p < heights.length; p++) {
+            heights[p] = new int[in.getInt()][in.getInt()];
+            for (int[] row : heights[p]) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = in.getInt();
+                }
+            }
+        }
+        sceneValues.put("getTileHeights", heights);
+
+        byte[][][] settings = new byte[in.getInt()][][];
+        for (int p = 0; p < settings.length; p++) {
+            settings[p] = new byte[in.getInt()][in.getInt()];
+            for (byte[] row : settings[p]) {
+                in.get(row);
+            }
+        }
+        sceneValues.put("getExtendedTileSettings", settings);
+
+        // Same as the plugin does when the client loads a scene
+        rig.overlay.invalidateTiles();
+    }
+
+    private void readModel(ByteBuffer in) {
+        int id = in.getInt();
+        int vertexCount = in.getInt();
+        float[] x = new float[vertexCount];
+        float[] y = new float[vertexCount];
+        float[] z = new float[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            x[i] = in.getFloat();
+            y[i] = in.getFloat();
+            z[i] = in.getFloat();
+        }
+
+        int faceCount = in.getInt();
+        int[] faces1 = new int[faceCount];
+        int[] faces2 = new int[faceCount];
+        int[] faces3 = new int[faceCount];
+        for (int i = 0; i < faceCount; i++) {
+            faces1[i] = in.getInt();
+            faces2[i] = in.getInt();
+            faces3[i] = in.getInt();
+        }
+
+        Map<String, Object> values = new HashMap<>();
+        modelValues.put(id, values);
+        values.put("getVerticesCount", vertexCount);
+        values.put("getVerticesX", x);
+        values.put("getVerticesY", y);
+        values.put("getVerticesZ", z);
+        values.put("getFaceCount", faceCount);
+        values.put("getFaceIndices1", faces1);
+        values.put("getFaceIndices2", faces2);
+        values.put("getFaceIndices3", faces3);
+        if (in.get() != 0) {
+            byte[] transparencies = new byte[faceCount];
+            in.get(transparencies);
+            values.put("getFaceTransparencies", transparencies);
+        }
+        models.put(id, StandIn.of(Model.class, values));
+    }
+
+    // A new shape of an earlier model, sharing its faces and moving some of its vertices
+    private void readModelDelta(ByteBuffer in) {
+        int id = in.getInt();
+        Map<String, Object> values = new HashMap<>(modelValues.get(in.getInt()));
+        float[] x = ((float[]) values.get("getVerticesX")).clone();
+        float[] y = ((float[]) values.get("getVerticesY")).clone();
+        float[] z = ((float[]) values.get("getVerticesZ")).clone();
+
+        int changed = in.getInt();
+        for (int i = 0; i < changed; i++) {
+            int vertex = in.getInt();
+            x[vertex] = in.getFloat();
+            y[vertex] = in.getFloat();
+            z[vertex] = in.getFloat();
+        }
+
+        values.put("getVerticesX", x);
+        values.put("getVerticesY", y);
+        values.put("getVerticesZ", z);
+        modelValues.put(id, values);
+        models.put(id, StandIn.of(Model.class, values));
+    }
+
+    private void readFrame(ByteBuffer in) throws ReflectiveOperationException {
+        clientValues.put("getTickCount", in.getInt());
+        clientValues.put("getCameraFpX", in.getDouble());
+        clientValues.put("getCameraFpY", in.getDouble());
+        clientValues.put("getCameraFpZ", in.getDouble());
+        clientValues.put("getCameraFpPitch", in.getDouble());
+        clientValues.put("getCameraFpYaw", in.getDouble());
+        clientValues.put("getCameraX", in.getInt());
+        clientValues.put("getCameraY", in.getInt());
+        clientValues.put("getCameraZ", in.getInt());
+        clientValues.put("getCameraPitch", in.getInt());
+        clientValues.put("getCameraYaw", in.getInt());
+        clientValues.put("getScale", in.getInt());
+        clientValues.put("getViewportXOffset", in.getInt());
+        clientValues.put("getViewportYOffset", in.getInt());
+        clientValues.put("getViewportWidth", in.getInt());
+        clientValues.put("getViewportHeight", in.getInt());
+        clientValues.put("isGpu", in.get() != 0);
+
+        int tick = (Integer) clientValues.get("getTickCount");
+        TargetMemory memory = rig.plugin.getTargetMemory();
+        NpcIndexSet tagged = rig.plugin.getTaggedNpcs();
+        memory.forgetAll();
+        tagged.clear();
+        NPC target = null;
+        NPC hovered = null;
+
+        int actorCount = in.getInt();
+        for (int i = 0; i < actorCount; i++) {
+            int index = in.getInt();
+            int flags = in.getInt();
+            if ((flags & SceneRecorder.FLAG_PLAYER) != 0) {
+                readActor(in, player);
+                continue;
+            }
+
+            ReplayActor<NPC> npc = npcs.computeIfAbsent(index, id -> new ReplayActor<>(NPC.class, id));
+            readActor(in, npc);
+            npc.compositionValues.put("getActions", (flags & SceneRecorder.FLAG_ATTACKABLE) != 0 ? new String[]{null, "Attack"} : null);
+
+            if ((flags & SceneRecorder.FLAG_REMEMBERED) != 0) {
+                memory.acknowledgeTarget(npc.actor, tick, Integer.MAX_VALUE - tick);
+            }
+            if ((flags & SceneRecorder.FLAG_TAGGED) != 0) {
+                tagged.add(npc.actor);
+            }
+            if ((flags & SceneRecorder.FLAG_TARGET) != 0) {
+                target = npc.actor;
+            }
+            if ((flags & SceneRecorder.FLAG_HOVERED) != 0) {
+                hovered = npc.actor;
+            }
+        }
+
+        OverlayHarness.inject(rig.plugin, "target", target);
+        OverlayHarness.inject(rig.plugin, "hoveredNpc", hovered);
+    }
+
+    private void readActor(ByteBuffer in, ReplayActor<?> replayActor) {
+        Map<String, Object> values = replayActor.values;
+        values.put("getWorldLocation", new WorldPoint(in.getInt(), in.getInt(), in.getInt()));
+        int localX = in.getInt();
+        int localY = in.getInt();
+        int size = in.getInt();
+        int footprintSize = in.getInt();
+        values.put("getCurrentOrientation", in.getInt());
+        values.put("getAnimationFrame", in.getInt());
+        values.put("getPoseAnimationFrame", in.getInt());
+        values.put("getAnimationHeightOffset", in.getInt());
+        values.put("getModel", models.get(in.getInt()));
+        values.put("getLocalLocation", in.get() != 0 ? new LocalPoint(localX, localY, worldView) : null);
+        values.put("getWorldView", worldView);
+        values.put("getFootprintSize", footprintSize);
+        replayActor.compositionValues.put("getSize", size);
+        replayActor.compositionValues.put("getFootprintSize", footprintSize);
+    }
+
+    private void printSummary(String label) {
+        long[] sorted = Arrays.copyOf(frameNanos, frames);
+        Arrays.sort(sorted);
+        if (frames == 0) {
+            System.out.printf("%s: no frames%n", label);
+            return;
+        }
+        System.out.printf("%s: %d frames, p50 %d us, p99 %d us, max %d us%n", label, frames,
+                sorted[frames / 2] / 1000, sorted[frames * 99 / 100] / 1000, sorted[frames - 1] / 1000);
+    }
+
+    // Later passes run with the overlay's caches and the JIT warmed up by the earlier ones
+    public static void main(String[] args) throws IOException, ReflectiveOperationException {
+        if (args.length < 1) {
+            System.err.println("Usage: SceneReplay <capture file> [passes]");
+            System.exit(1);
+        }
+        Path path = Paths.get(args[0]);
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer capture = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            SceneReplay replay = new SceneReplay();
+            for (int pass = 1; pass <= passes; pass++) {
+                replay.play(capture);
+                replay.printSummary("Pass " + pass);
+            }
+            replay.rig.dispose();
+        }
+    }
+}
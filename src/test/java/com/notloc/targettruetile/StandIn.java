@@ -0,0 +1,92 @@
+package com.notloc.targettruetile;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+// Minimal reflective stand-in for RuneLite API interfaces.
+// Methods listed in the value map return that value, everything else returns the type's default.
+final class StandIn implements InvocationHandler {
+    private final Map<String, Object> values;
+    private final boolean runDefaults;
+
+    private StandIn(Map<String, Object> values, boolean runDefaults) {
+        this.values = values;
+        this.runDefaults = runDefaults;
+    }
+
+    static <T> T of(Class<T> type, Map<String, Object> values) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new StandIn(values, false));
+        return type.cast(proxy);
+    }
+
+    // Unlisted default methods run as declared, so a config stand-in returns the config's own defaults
+    static <T> T withDefaults(Class<T> type, Map<String, Object> values) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new StandIn(values, true));
+        return type.cast(proxy);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "StandIn(" + proxy.getClass().getInterfaces()[0].getSimpleName() + ")";
+            }
+        }
+
+        if (runDefaults && method.isDefault() && !values.containsKey(method.getName())) {
+            Class<?> type = method.getDeclaringClass();
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+                    .unreflectSpecial(method, type)
+                    .bindTo(proxy)
+                    .invokeWithArguments(args == null ? new Object[0] : args);
+        }
+
+        Class<?> returnType = method.getReturnType();
+        Object value = values.get(method.getName());
+        if (value == null) {
+            return defaultValue(returnType);
+        }
+        if (value instanceof Number) {
+            return coerce((Number) value, returnType);
+        }
+        return value;
+    }
+
+    private static Object coerce(Number value, Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return value.intValue();
+        } else if (type == long.class || type == Long.class) {
+            return value.longValue();
+        } else if (type == double.class || type == Double.class) {
+            return value.doubleValue();
+        } else if (type == float.class || type == Float.class) {
+            return value.floatValue();
+        } else if (type == short.class || type == Short.class) {
+            return value.shortValue();
+        } else if (type == byte.class || type == Byte.class) {
+            return value.byteValue();
+        }
+        return value;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        return coerce(0, type);
+    }
+}
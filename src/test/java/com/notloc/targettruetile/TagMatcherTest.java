@@ -0,0 +1,67 @@
+package com.notloc.targettruetile;
+
+import net.runelite.client.util.WildcardMatcher;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+// TagMatcher has to tag exactly the NPCs that NPC Indicators highlights through WildcardMatcher
+public class TagMatcherTest {
+    private static final List<String> PATTERNS = Arrays.asList(
+            "Goblin", "GOBLIN", "goblin", "gObLiN",
+            "*", "**",
+            "guard*", "*GUARD", "*guard*", "a*b*c", "*a*b*c*", "a**c",
+            "Dr. Ford", "a.c", "(boss)", "[x]", "a+b", "why?", "^start", "end|or", "x{2}",
+            "\u0130brahim", "\u0131brahim", "Ibrahim", "ibrahim", "\u00c9lise", "\u00e9lise", "\u00c9LISE", "stra\u00dfe", "STRASSE");
+
+    private static final List<String> NAMES = Arrays.asList(
+            "Goblin", "goblin", "GOBLIN", "Goblins", "Hobgoblin",
+            "Guard", "guard captain", "Prison Guard", "Prison guard dog", "",
+            "abc", "ABC", "aXbYc", "abcabc", "acb", "Xabc", "ac", "aac",
+            "Dr. Ford", "dr. ford", "Dr! Ford", "a.c", "abc", "(boss)", "boss", "[x]", "x", "a+b", "aab", "why?", "why",
+            "^start", "start", "end|or", "end", "x{2}", "xx",
+            "\u0130brahim", "\u0131brahim", "Ibrahim", "ibrahim", "i\u0307brahim", "\u00c9lise", "\u00e9lise", "\u00c9LISE", "Elise", "stra\u00dfe", "STRASSE");
+
+    @Test
+    public void matchesLikeWildcardMatcherForEachPattern() {
+        for (String pattern : PATTERNS) {
+            TagMatcher matcher = new TagMatcher(Collections.singletonList(pattern));
+            for (String name : NAMES) {
+                assertEquals(pattern + " / " + name, WildcardMatcher.matches(pattern, name), matcher.matches(name));
+            }
+        }
+    }
+
+    @Test
+    public void matchesLikeWildcardMatcherForRandomLists() {
+        Random random = new Random(6);
+        for (int run = 0; run < 500; run++) {
+            List<String> patterns = new ArrayList<>();
+            int count = 1 + random.nextInt(5);
+            for (int i = 0; i < count; i++) {
+                patterns.add(PATTERNS.get(random.nextInt(PATTERNS.size())));
+            }
+
+            TagMatcher matcher = new TagMatcher(patterns);
+            for (String name : NAMES) {
+                boolean expected = patterns.stream().anyMatch(pattern -> WildcardMatcher.matches(pattern, name));
+                // Asked twice, the second answer comes from the remembered results
+                assertEquals(patterns + " / " + name, expected, matcher.matches(name));
+                assertEquals(patterns + " / " + name, expected, matcher.matches(name));
+            }
+        }
+    }
+
+    @Test
+    public void emptyListMatchesNothing() {
+        for (String name : NAMES) {
+            assertEquals(name, false, TagMatcher.EMPTY.matches(name));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.notloc.targettruetile;
+
+import net.runelite.api.NPC;
+import net.runelite.api.NPCComposition;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+// Expiry by game tick, with stand-in NPCs that only have an index and a composition
+public class TargetMemoryTest {
+    private final TargetMemory memory = new TargetMemory();
+
+    @Test
+    public void expiresOnTheTimeoutTick() {
+        NPC npc = npc(1);
+        memory.acknowledgeTarget(npc, 10, 5);
+
+        memory.forgetOldTargets(14);
+        assertTrue(remembered(npc));
+        memory.forgetOldTargets(15);
+        assertFalse(remembered(npc));
+    }
+
+    @Test
+    public void zeroTimeoutExpiresOnTheSameTick() {
+        NPC npc = npc(1);
+        memory.acknowledgeTarget(npc, 10, 0);
+        assertTrue(remembered(npc));
+
+        memory.forgetOldTargets(10);
+        assertFalse(remembered(npc));
+    }
+
+    @Test
+    public void refreshingRequeuesUnderTheNewDeadline() {
+        NPC npc = npc(1);
+        memory.acknowledgeTarget(npc, 0, 5);
+        memory.acknowledgeTarget(npc, 3, 5);
+
+        // The first deadline comes up and requeues the target instead of expiring it
+        memory.forgetOldTargets(5);
+        assertTrue(remembered(npc));
+        memory.forgetOldTargets(7);
+        assertTrue(remembered(npc));
+        memory.forgetOldTargets(8);
+        assertFalse(remembered(npc));
+    }
+
+    @Test
+    public void forgottenTargetLeavesNoDeadlineBehind() {
+        NPC npc = npc(1);
+        memory.acknowledgeTarget(npc, 0, 5);
+        memory.forgetTarget(npc);
+        assertFalse(remembered(npc));
+
+        // Targeted again with a longer timeout, the queue entry from before must not expire it early
+        memory.acknowledgeTarget(npc, 2, 10);
+        memory.forgetOldTargets(5);
+        assertTrue(remembered(npc));
+        memory.forgetOldTargets(12);
+        assertFalse(remembered(npc));
+    }
+
+    @Test
+    public void forgetAllExceptLeavesNoDeadlinesBehind() {
+        NPC kept = npc(1);
+        NPC other = npc(2);
+        memory.acknowledgeTarget(kept, 0, 20);
+        memory.acknowledgeTarget(other, 0, 5);
+
+        memory.forgetAllExcept(kept);
+        assertTrue(remembered(kept));
+        assertFalse(remembered(other));
+
+        memory.acknowledgeTarget(other, 2, 10);
+        memory.forgetOldTargets(5);
+        assertTrue(remembered(other));
+        memory.forgetOldTargets(12);
+        assertFalse(remembered(other));
+        assertTrue(remembered(kept));
+    }
+
+    @Test
+    public void indexReusedByAnotherNpc() {
+        NPC despawned = npc(3);
+        NPC spawned = npc(3);
+        memory.acknowledgeTarget(despawned, 0, 5);
+        memory.acknowledgeTarget(spawned, 2, 10);
+
+        assertSame(spawned, memory.getNpcs().get(3));
+        assertFalse(remembered(despawned));
+
+        // Neither the old NPC's deadline nor forgetting it touches the NPC now holding the index
+        memory.forgetTarget(despawned);
+        memory.forgetOldTargets(5);
+        assertTrue(remembered(spawned));
+        memory.forgetOldTargets(12);
+        assertFalse(remembered(spawned));
+    }
+
+    @Test
+    public void invisibleNpcsAreDroppedBeforeTheirDeadline() {
+        Map<String, Object> dying = npcValues(1);
+        Map<String, Object> transforming = npcValues(2);
+        NPC dyingNpc = StandIn.of(NPC.class, dying);
+        NPC transformingNpc = StandIn.of(NPC.class, transforming);
+        memory.acknowledgeTarget(dyingNpc, 0, 50);
+        memory.acknowledgeTarget(transformingNpc, 0, 50);
+
+        dying.put("isDead", true);
+        transforming.remove("getComposition");
+        memory.forgetOldTargets(1);
+        assertFalse(remembered(dyingNpc));
+        assertFalse(remembered(transformingNpc));
+
+        // Nor remembered when targeted while invisible
+        memory.acknowledgeTarget(dyingNpc, 2, 50);
+        assertFalse(remembered(dyingNpc));
+    }
+
+    private boolean remembered(NPC npc) {
+        return memory.getNpcs().contains(npc);
+    }
+
+    private static NPC npc(int index) {
+        return StandIn.of(NPC.class, npcValues(index));
+    }
+
+    private static Map<String, Object> npcValues(int index) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("getIndex", index);
+        values.put("getComposition", StandIn.of(NPCComposition.class, new HashMap<>()));
+        return values;
+    }
+}
@@ -0,0 +1,242 @@
+package com.notloc.targettruetile;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Merged polygons have to fill exactly the pixels the triangles would have filled one by one
+public class TriangleMergerTest {
+    private static final int SIZE = 96;
+
+    @Test
+    public void mergedPolygonsCoverTheTriangles() {
+        Random random = new Random(2);
+        // Tiny tables, so every mesh grows them, probes wrap around the end and splices grow them halfway through
+        TriangleMerger merger = new TriangleMerger(3, 2);
+        for (int mesh = 0; mesh < 300; mesh++) {
+            List<int[]> triangles = mesh(random, 0);
+            assertSameCoverage(merger, triangles, true);
+        }
+    }
+
+    @Test
+    public void mergedPolygonsCoverTheTrianglesAcrossStampRollover() throws ReflectiveOperationException {
+        Random random = new Random(3);
+        List<int[]> triangles = mesh(random, 0);
+        List<int[]> half = new ArrayList<>(triangles.subList(0, triangles.size() / 2));
+
+        TriangleMerger merger = new TriangleMerger();
+        // Grown to fit the mesh first, growing starts the stamps over
+        assertSameCoverage(merger, triangles, true);
+
+        Field stamp = TriangleMerger.class.getDeclaredField("stamp");
+        stamp.setAccessible(true);
+        stamp.setInt(merger, Integer.MAX_VALUE - 3);
+
+        // The entries of the first mesh are still in the table under the stamp the rollover starts from again,
+        // if they weren't cleared the whole mesh would splice into rings that no longer exist
+        for (int round = 0; round < 8; round++) {
+            List<int[]> next = round < 2 ? half : triangles;
+            Collections.shuffle(next, random);
+            assertSameCoverage(merger, next, true);
+        }
+        assertEquals(6, stamp.getInt(merger));
+    }
+
+    @Test
+    public void trianglesPastSixteenBitsStayApart() {
+        Random random = new Random(4);
+        TriangleMerger merger = new TriangleMerger(3, 2);
+        for (int mesh = 0; mesh < 100; mesh++) {
+            // A copy of the mesh 65536 pixels away packs into the same edge keys, and some triangles reach far outside
+            List<int[]> triangles = mesh(random, 0);
+            triangles.addAll(mesh(new Random(mesh), 1 << 16));
+            for (int i = 0; i < 4; i++) {
+                int x = random.nextInt(SIZE);
+                int y = random.nextInt(SIZE);
+                triangles.add(new int[]{x, y, x + 10, y + 5, -40000, y + 2});
+            }
+            Collections.shuffle(triangles, random);
+            assertSameCoverage(merger, triangles, false);
+        }
+    }
+
+    private static void assertSameCoverage(TriangleMerger merger, List<int[]> triangles, boolean expectMerges) {
+        merger.reset();
+        BufferedImage expected = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = expected.createGraphics();
+        graphics.setColor(Color.WHITE);
+        for (int[] t : triangles) {
+            graphics.fillPolygon(new int[]{t[0], t[2], t[4]}, new int[]{t[1], t[3], t[5]}, 3);
+            merger.addTriangle(t[0], t[1], t[2], t[3], t[4], t[5]);
+        }
+        graphics.dispose();
+
+        List<Polygon> polygons = merger.getPolygons();
+        BufferedImage actual = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        graphics = actual.createGraphics();
+        graphics.setColor(Color.WHITE);
+        for (Polygon polygon : polygons) {
+            graphics.fillPolygon(polygon);
+        }
+        graphics.dispose();
+
+        if (expectMerges) {
+            assertTrue(polygons.size() < triangles.size());
+        }
+        assertArrayEquals(expected.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE), actual.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE));
+
+        // An edge lost from the table only costs a merge, which the pixels can't show
+        ReferenceMerger reference = new ReferenceMerger();
+        for (int[] t : triangles) {
+            reference.addTriangle(t[0], t[1], t[2], t[3], t[4], t[5]);
+        }
+        List<Polygon> expectedPolygons = reference.getPolygons();
+        assertEquals(expectedPolygons.size(), polygons.size());
+        for (int i = 0; i < polygons.size(); i++) {
+            Polygon polygon = polygons.get(i);
+            assertArrayEquals(expectedPolygons.get(i).xpoints, Arrays.copyOf(polygon.xpoints, polygon.npoints));
+            assertArrayEquals(expectedPolygons.get(i).ypoints, Arrays.copyOf(polygon.ypoints, polygon.npoints));
+        }
+    }
+
+    // The same splicing over a HashMap, to check the merger's own edge table against
+    private static class ReferenceMerger implements TriangleSink {
+        private final List<int[]> vertices = new ArrayList<>();
+        private final List<Integer> rings = new ArrayList<>();
+        private final Map<Long, Integer> edges = new HashMap<>();
+
+        @Override
+        public void addTriangle(int x1, int y1, int x2, int y2, int x3, int y3) {
+            if (!fits(x1) || !fits(y1) || !fits(x2) || !fits(y2) || !fits(x3) || !fits(y3)) {
+                addRing(x1, y1, x2, y2, x3, y3);
+                return;
+            }
+
+            Integer node;
+            if ((node = edges.remove(key(x1, y1, x2, y2))) != null) {
+                splice(node, x3, y3);
+            } else if ((node = edges.remove(key(x2, y2, x3, y3))) != null) {
+                splice(node, x1, y1);
+            } else if ((node = edges.remove(key(x3, y3, x1, y1))) != null) {
+                splice(node, x2, y2);
+            } else {
+                int start = addRing(x1, y1, x2, y2, x3, y3);
+                edges.put(key(x1, y1, x2, y2), start);
+                edges.put(key(x2, y2, x3, y3), start + 1);
+                edges.put(key(x3, y3, x1, y1), start + 2);
+            }
+        }
+
+        List<Polygon> getPolygons() {
+            List<Polygon> polygons = new ArrayList<>();
+            for (int start : rings) {
+                Polygon polygon = new Polygon();
+                int node = start;
+                do {
+                    polygon.addPoint(vertices.get(node)[0], vertices.get(node)[1]);
+                    node = vertices.get(node)[2];
+                } while (node != start);
+                polygon.xpoints = Arrays.copyOf(polygon.xpoints, polygon.npoints);
+                polygon.ypoints = Arrays.copyOf(polygon.ypoints, polygon.npoints);
+                polygons.add(polygon);
+            }
+            return polygons;
+        }
+
+        private void splice(int a, int x, int y) {
+            int b = vertices.get(a)[2];
+            int c = vertices.size();
+            vertices.add(new int[]{x, y, b});
+            vertices.get(a)[2] = c;
+            edges.put(key(vertices.get(a)[0], vertices.get(a)[1], x, y), a);
+            edges.put(key(x, y, vertices.get(b)[0], vertices.get(b)[1]), c);
+        }
+
+        private int addRing(int x1, int y1, int x2, int y2, int x3, int y3) {
+            int start = vertices.size();
+            vertices.add(new int[]{x1, y1, start + 1});
+            vertices.add(new int[]{x2, y2, start + 2});
+            vertices.add(new int[]{x3, y3, start});
+            rings.add(start);
+            return start;
+        }
+
+        private static boolean fits(int v) {
+            return v >= Short.MIN_VALUE && v <= Short.MAX_VALUE;
+        }
+
+        private static long key(int x1, int y1, int x2, int y2) {
+            long a = ((long) (x1 & 0xFFFF) << 16) | (y1 & 0xFFFF);
+            long b = ((long) (x2 & 0xFFFF) << 16) | (y2 & 0xFFFF);
+            return Math.min(a, b) << 32 | Math.max(a, b);
+        }
+    }
+
+    // A jittered grid split into triangles along random diagonals, with some triangles missing.
+    // Triangles come in random order and winding, the way a culled model hands them over.
+    private static List<int[]> mesh(Random random, int offsetX) {
+        int spacing = 6 + random.nextInt(10);
+        int columns = SIZE / spacing + 2;
+        int rows = SIZE / spacing + 2;
+        int originX = offsetX - random.nextInt(spacing);
+        int originY = -random.nextInt(spacing);
+
+        int[][] pointX = new int[columns + 1][rows + 1];
+        int[][] pointY = new int[columns + 1][rows + 1];
+        int jitter = spacing / 4;
+        for (int i = 0; i <= columns; i++) {
+            for (int j = 0; j <= rows; j++) {
+                pointX[i][j] = originX + i * spacing + random.nextInt(2 * jitter + 1) - jitter;
+                pointY[i][j] = originY + j * spacing + random.nextInt(2 * jitter + 1) - jitter;
+            }
+        }
+
+        List<int[]> triangles = new ArrayList<>();
+        for (int i = 0; i < columns; i++) {
+            for (int j = 0; j < rows; j++) {
+                int[] a = {pointX[i][j], pointY[i][j]};
+                int[] b = {pointX[i + 1][j], pointY[i + 1][j]};
+                int[] c = {pointX[i + 1][j + 1], pointY[i + 1][j + 1]};
+                int[] d = {pointX[i][j + 1], pointY[i][j + 1]};
+                if (random.nextBoolean()) {
+                    addTriangle(random, triangles, a, b, c);
+                    addTriangle(random, triangles, a, c, d);
+                } else {
+                    addTriangle(random, triangles, a, b, d);
+                    addTriangle(random, triangles, b, c, d);
+                }
+            }
+        }
+        Collections.shuffle(triangles, random);
+        return triangles;
+    }
+
+    private static void addTriangle(Random random, List<int[]> triangles, int[] a, int[] b, int[] c) {
+        if (random.nextInt(8) == 0) {
+            return;
+        }
+        int[][] corners = random.nextBoolean() ? new int[][]{a, b, c} : new int[][]{c, b, a};
+        int first = random.nextInt(3);
+        int[] triangle = new int[6];
+        for (int i = 0; i < 3; i++) {
+            int[] corner = corners[(first + i) % 3];
+            triangle[i * 2] = corner[0];
+            triangle[i * 2 + 1] = corner[1];
+        }
+        triangles.add(triangle);
+    }
+}